@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import joeyproductions.jessadventurecore.world.ResolvedCommand;
+import joeyproductions.jessadventurecore.world.World;
+import joeyproductions.jessadventurecore.world.WorldVersion;
+
+/**
+ * Parses a whole list of commands at once, spread across every core, for
+ * checking walkthroughs and regression scripts without going through the
+ * prompt one command at a time.
+ * 
+ * Every command is parsed against the same pinned version of the world, so
+ * the results don't depend on how the work was split up. Parsing doesn't
+ * change the world, so the commands don't affect each other either; to see
+ * what happens when commands are actually run, submit them to the adventure
+ * core instead.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class BatchParser {
+    
+    /**
+     * How one command parsed. Exactly one of command or failure is set.
+     */
+    public static final class Result {
+        
+        public final String input;
+        public final ResolvedCommand command;
+        // Why the parser gave up, if it did
+        public final String failure;
+        public final ParseResult.Reason reason;
+        // Where in the sanitized input it gave up, if it knows
+        public final int failurePosition;
+        
+        private Result(String input, ParseResult<ResolvedCommand> parsed) {
+            this.input = input;
+            this.command = parsed.value;
+            this.failure = parsed.getMessage();
+            this.reason = parsed.reason;
+            this.failurePosition = parsed.position;
+        }
+        
+        public boolean isResolved() {
+            return command != null;
+        }
+        
+        @Override
+        public String toString() {
+            return "[" + input + "] "
+                    + (isResolved() ? command.toString() : "FAILED: " + failure);
+        }
+    }
+    
+    private BatchParser() {
+        //
+    }
+    
+    /**
+     * Parses every input against the world as it is right now.
+     * @return one result per input, in the same order
+     */
+    public static List<Result> parseAll(World world, List<String> inputs) {
+        return parseAll(world.pin(), inputs);
+    }
+    
+    /**
+     * Parses every input against one version of the world.
+     * @return one result per input, in the same order
+     */
+    public static List<Result> parseAll(WorldVersion world, List<String> inputs) {
+        Result[] results = new Result[inputs.size()];
+        ForkJoinPool.commonPool().invoke(
+                new ParseTask(world, inputs, results, 0, inputs.size())
+        );
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * @return only the results that failed to parse
+     */
+    public static List<Result> failuresOf(List<Result> results) {
+        ArrayList<Result> failures = new ArrayList<>();
+        for (Result result : results) {
+            if (!result.isResolved()) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+    
+    /**
+     * Splits the inputs in half until the pieces are small, and parses the
+     * pieces on the fork/join pool. Each piece is parsed by one thread, with
+     * scratch that nothing else can see.
+     */
+    private static class ParseTask extends RecursiveAction {
+        
+        private static final int THRESHOLD = 256;
+        
+        private final WorldVersion world;
+        private final List<String> inputs;
+        private final Result[] results;
+        private final int start;
+        private final int end;
+        
+        ParseTask(WorldVersion world, List<String> inputs, Result[] results,
+                int start, int end) {
+            this.world = world;
+            this.inputs = inputs;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+        
+        @Override
+        protected void compute() {
+            if (end - start <= THRESHOLD) {
+                ParseScratch scratch = new ParseScratch();
+                for (int i = start; i < end; i++) {
+                    results[i] = parseOne(inputs.get(i), scratch);
+                }
+                return;
+            }
+            
+            int middle = (start + end) >>> 1;
+            invokeAll(
+                    new ParseTask(world, inputs, results, start, middle),
+                    new ParseTask(world, inputs, results, middle, end)
+            );
+        }
+        
+        private Result parseOne(String input, ParseScratch scratch) {
+            String sterileInput = scratch.sanitizer.filter(input).trim();
+            return new Result(input,
+                    PromptContext.parseCommand(world, sterileInput, scratch)
+            );
+        }
+    }
+}
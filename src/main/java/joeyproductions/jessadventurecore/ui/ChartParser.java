@@ -0,0 +1,306 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import joeyproductions.jessadventurecore.world.VerbLexicon;
+import joeyproductions.jessadventurecore.world.VocabularyWord;
+
+/**
+ * A chart parser over the player's input, which finds every way the input
+ * could be split into vocabulary words, instead of only the greedy one.
+ * 
+ * The input is cut into tokens at spaces, and the boundaries between tokens
+ * become the nodes of a lattice. The chart has one cell per span of tokens,
+ * holding every vocabulary word spelled exactly like that span, so
+ * "look at" and "look" can both live in the chart at once. Each cell is
+ * filled exactly once, and a span's hash is grown from the one before it,
+ * so building the chart costs one hash lookup per span, with no substrings.
+ * 
+ * On top of the chart, two symbols are memoized over spans:
+ *   PHRASE  - any run of words that covers the span exactly
+ *   COMMAND - a PHRASE whose first word can start a verb
+ * Both only ever span to the end of the input, so their memo tables are
+ * indexed by the starting node. Counting parses is then a single sweep
+ * backwards over the nodes, and listing the readings never walks into a
+ * dead end.
+ * 
+ * @author Joseph Cramsey
+ */
+class ChartParser {
+    
+    private final String input;
+    private final VocabularyIndex index;
+    private final VerbLexicon lexicon;
+    private final Tokenizer tokens;
+    private final int tokenCount;
+    
+    // No word has more tokens than this, so no longer span can have a cell
+    private final int maxSpan;
+    // The cell for a span is at start * maxSpan + (end - start - 1), and
+    // holds the words spanning those tokens, or null if no word does. Only
+    // spans up to maxSpan get a cell, so a long input costs memory in line
+    // with its length, and not its length squared.
+    private final ArrayList<List<VocabularyWord>> cells;
+    
+    // Number of PHRASE parses from each node to the end, capped so huge
+    // ambiguous inputs can't overflow.
+    private final long[] phraseCounts;
+    private long commandCount;
+    
+    // Where we got stuck, for reporting why the input makes no sense
+    private int deepestNode;
+    
+    /**
+     * @param tokens scratch to tokenize the input into
+     */
+    ChartParser(String input, Tokenizer tokens, VocabularyIndex index,
+            VerbLexicon lexicon) {
+        this.input = input;
+        this.index = index;
+        this.lexicon = lexicon;
+        this.tokens = tokens;
+        this.tokenCount = tokens.tokenize(input);
+        
+        this.maxSpan = Math.min(tokenCount, index.longestTokenCount);
+        this.cells = new ArrayList<>(Collections.nCopies(tokenCount * maxSpan,
+                (List<VocabularyWord>)null));
+        for (int start = 0; start < tokenCount; start++) {
+            int hash = tokens.getHash(start);
+            for (int end = start + 1; end <= getLastEnd(start); end++) {
+                if (end > start + 1) {
+                    hash = tokens.extendHash(hash, end - 1);
+                }
+                int from = tokens.getStart(start);
+                int to = tokens.getEnd(end - 1);
+                if (to - from > index.longestSpelling) break;
+                cells.set(start * maxSpan + (end - start - 1),
+                        findSpelled(index.getCandidates(hash), start, end));
+            }
+        }
+        
+        this.phraseCounts = new long[tokenCount + 1];
+        countParses();
+    }
+    
+    /**
+     * Two spellings can share a hash, so only keep the words that really are
+     * spelled like the span. That's almost always all of them, so the list
+     * from the index is used as-is, unless something needs to be dropped.
+     */
+    private List<VocabularyWord> findSpelled(List<VocabularyWord> candidates,
+            int start, int end) {
+        List<VocabularyWord> spelled = candidates;
+        for (int i = 0; i < candidates.size(); i++) {
+            VocabularyWord word = candidates.get(i);
+            if (tokens.spanMatches(input, start, end - 1, word.str)) {
+                if (spelled != candidates) spelled.add(word);
+            }
+            else if (spelled == candidates) {
+                spelled = new ArrayList<>(candidates.subList(0, i));
+            }
+        }
+        return spelled.isEmpty() ? null : spelled;
+    }
+    
+    private void countParses() {
+        phraseCounts[tokenCount] = 1;
+        for (int start = tokenCount - 1; start >= 0; start--) {
+            long count = 0;
+            for (int end = start + 1; end <= getLastEnd(start); end++) {
+                if (getCell(start, end) != null) {
+                    count = saturatedAdd(count, phraseCounts[end]);
+                }
+            }
+            phraseCounts[start] = count;
+        }
+        
+        // If no verb phrase even starts with the first token, then no
+        // reading can be a command, and there's nothing to check.
+        commandCount = 0;
+        boolean couldStartVerb = tokenCount > 0 && firstTokenStartsPhrase();
+        for (int end = 1; couldStartVerb && end <= getLastEnd(0); end++) {
+            if (startsVerb(getCell(0, end))) {
+                commandCount = saturatedAdd(commandCount, phraseCounts[end]);
+            }
+        }
+        
+        // Walk forward along anything that matches, to find how far the
+        // input makes sense before it stops.
+        deepestNode = 0;
+        boolean[] reachable = new boolean[tokenCount + 1];
+        reachable[0] = true;
+        for (int start = 0; start < tokenCount; start++) {
+            if (!reachable[start]) continue;
+            deepestNode = start;
+            for (int end = start + 1; end <= getLastEnd(start); end++) {
+                if (getCell(start, end) != null) {
+                    reachable[end] = true;
+                }
+            }
+        }
+        if (reachable[tokenCount]) {
+            deepestNode = tokenCount;
+        }
+    }
+    
+    private boolean firstTokenStartsPhrase() {
+        for (String firstToken : lexicon.getPhraseFirstTokens(tokens.getHash(0))) {
+            if (tokens.spanMatches(input, 0, 0, firstToken)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+    
+    private boolean startsVerb(List<VocabularyWord> cell) {
+        if (cell == null) return false;
+        for (VocabularyWord word : cell) {
+            if (lexicon.isPhrase(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private List<VocabularyWord> getCell(int start, int end) {
+        return cells.get(start * maxSpan + (end - start - 1));
+    }
+    
+    /**
+     * @return the furthest node a word starting here could reach
+     */
+    private int getLastEnd(int start) {
+        return Math.min(tokenCount, start + maxSpan);
+    }
+    
+    /**
+     * Lists the readings of the input, best first, up to a limit, so the
+     * caller can try each one until its verb frame and noun streaks work out.
+     * 
+     * Readings that start with a verb come before ones that don't, and after
+     * that, the longest word at each position comes first. The very first
+     * reading is exactly what the old greedy matcher would have picked,
+     * whenever the greedy pick could be finished.
+     * 
+     * If no reading starts with a verb, then every one of them would fail
+     * the same way, so only the first is listed.
+     */
+    ParseResult<List<ListSequence<VocabularyWord>>> getParses(int limit) {
+        ArrayList<ListSequence<VocabularyWord>> parses = new ArrayList<>();
+        if (tokenCount == 0) {
+            parses.add(new ListSequence<>());
+            return ParseResult.ok(parses);
+        }
+        
+        if (phraseCounts[0] == 0) {
+            return createFailure();
+        }
+        
+        enumerateParses(parses, commandCount > 0 ? limit : 1);
+        return ParseResult.ok(parses);
+    }
+    
+    /**
+     * Walks the readings longest word first, with its own stack instead of
+     * recursing, so a pasted line of thousands of words can't overflow the
+     * thread's stack. nodes[depth] is where the word at that depth starts,
+     * and nextEnds[depth] is the next end to try for it.
+     */
+    private void enumerateParses(ArrayList<ListSequence<VocabularyWord>> parses,
+            int limit) {
+        int[] nodes = new int[tokenCount + 1];
+        int[] nextEnds = new int[tokenCount + 1];
+        int depth = 0;
+        nodes[0] = 0;
+        nextEnds[0] = getLastEnd(0);
+        
+        while (depth >= 0 && parses.size() < limit) {
+            int start = nodes[depth];
+            if (start == tokenCount) {
+                parses.add(createSequence(nodes, depth));
+                depth--;
+                continue;
+            }
+            
+            int end = nextEnds[depth];
+            while (end > start && !canContinue(start, end)) end--;
+            if (end <= start) {
+                depth--;
+                continue;
+            }
+            
+            nextEnds[depth] = end - 1;
+            depth++;
+            nodes[depth] = end;
+            nextEnds[depth] = getLastEnd(end);
+        }
+    }
+    
+    private boolean canContinue(int start, int end) {
+        List<VocabularyWord> cell = getCell(start, end);
+        // The memo table prunes every dead end before we walk into it
+        if (cell == null || phraseCounts[end] == 0) return false;
+        return start != 0 || commandCount == 0 || startsVerb(cell);
+    }
+    
+    private ListSequence<VocabularyWord> createSequence(int[] nodes, int wordCount) {
+        ListSequence<VocabularyWord> sequence = new ListSequence<>();
+        for (int i = 0; i < wordCount; i++) {
+            sequence.addEmptyList();
+            sequence.addAllToLastList(getCell(nodes[i], nodes[i + 1]));
+        }
+        return sequence;
+    }
+    
+    private <T> ParseResult<T> createFailure() {
+        // Nothing in the chart starts at the deepest node, or else we could
+        // have gone further. If a word at least starts to match there, then
+        // the player wrote a longer word than anything we know.
+        int position = tokens.getStart(deepestNode);
+        String remainder = input.substring(position);
+        int longestPrefix = 0;
+        for (VocabularyWord word : index.vocab) {
+            int length = word.str.length();
+            if (length > longestPrefix
+                    && remainder.regionMatches(true, 0, word.str, 0, length)) {
+                longestPrefix = length;
+            }
+        }
+        
+        if (longestPrefix == 0) {
+            return ParseResult.failed(ParseResult.Reason.NO_VOCABULARY_MATCH,
+                    position, null);
+        }
+        return ParseResult.failed(ParseResult.Reason.PARTIAL_WORD,
+                position + longestPrefix, remainder.substring(longestPrefix));
+    }
+}
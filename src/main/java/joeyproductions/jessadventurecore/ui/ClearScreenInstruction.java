@@ -28,7 +28,10 @@ package joeyproductions.jessadventurecore.ui;
  * 
  * @author Joseph Cramsey
  */
-public class ClearScreenInstruction implements StoryPanelInstruction {
+public final class ClearScreenInstruction implements StoryPanelInstruction {
     
-    //
+    @Override
+    public InstructionKind getKind() {
+        return InstructionKind.CLEAR_SCREEN;
+    }
 }
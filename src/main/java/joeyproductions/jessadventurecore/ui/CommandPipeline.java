@@ -0,0 +1,269 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+import joeyproductions.jessadventurecore.world.ResolvedCommand;
+import joeyproductions.jessadventurecore.world.VerbAction;
+import joeyproductions.jessadventurecore.world.WorldVersion;
+
+/**
+ * Carries the player's submitted input through three stages, each on its
+ * own thread:
+ *   1. The parser thread turns the input into a ResolvedCommand.
+ *   2. The game logic thread runs the command's verb action, which writes
+ *      story into the StoryPanelBuffer.
+ *   3. The EDT (or the headless sink) writes the story out.
+ * 
+ * The parser works ahead of the game logic, against whatever world version
+ * was current when it got to the input. If the logic changed the world in
+ * the meantime, the logic parses the input again before running it.
+ * 
+ * The stages are joined by small bounded queues. If the game logic falls
+ * behind, the parser blocks on a full queue, and then the prompt stops
+ * accepting new input until there is room, rather than piling up commands
+ * without limit. The EDT never blocks on any of this, so slow game logic
+ * can't freeze the player's typing.
+ * 
+ * @author Joseph Cramsey
+ */
+class CommandPipeline {
+    
+    private static final int QUEUE_CAPACITY = 16;
+    
+    /**
+     * A submission, once the parser is done with it. The command is null if
+     * the input didn't make sense.
+     */
+    static class ParsedInput {
+        
+        final String input;
+        final ResolvedCommand command;
+        // The world version the input was parsed against
+        final long worldVersion;
+        
+        ParsedInput(String input, ResolvedCommand command, long worldVersion) {
+            this.input = input;
+            this.command = command;
+            this.worldVersion = worldVersion;
+        }
+    }
+    
+    private final JessAdventureCore core;
+    private final ArrayBlockingQueue<String> submissions;
+    private final ArrayBlockingQueue<ParsedInput> parsedInputs;
+    // The parser has to wait until the world has been prestarted
+    private final CountDownLatch worldReady;
+    private final AtomicBoolean renderScheduled;
+    private final Thread parserThread;
+    private final Thread logicThread;
+    private Runnable startup;
+    
+    // Submissions that haven't made it all the way through yet
+    private int inFlight;
+    private final Object idleLock = new Object();
+    private final InputSanitizer sanitizer = new InputSanitizer();
+    // Only the parser thread uses this
+    private final ParseScratch parserScratch = new ParseScratch();
+    // Only the game logic thread uses this, for parsing stale inputs again
+    private final ParseScratch logicScratch = new ParseScratch();
+    
+    CommandPipeline(JessAdventureCore core) {
+        this.core = core;
+        this.submissions = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.parsedInputs = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.worldReady = new CountDownLatch(1);
+        this.renderScheduled = new AtomicBoolean(false);
+        this.inFlight = 0;
+        
+        parserThread = new Thread(this::runParser, "Command parser");
+        parserThread.setDaemon(true);
+        logicThread = new Thread(this::runLogic, "Game logic");
+        logicThread.setDaemon(true);
+    }
+    
+    /**
+     * Starts the threads.
+     * @param startup run first on the game logic thread, before any command
+     * gets parsed, like prestarting the world. May be null.
+     */
+    void start(Runnable startup) {
+        this.startup = startup;
+        parserThread.start();
+        logicThread.start();
+    }
+    
+    /**
+     * Hands an input to the parser, without ever blocking.
+     * @return false if the pipeline is full, and the input was not taken
+     */
+    boolean submit(String input) {
+        // The sanitizer's buffer is shared, so only one thread submits at a time
+        synchronized (sanitizer) {
+            input = sanitizer.filter(input).trim();
+        }
+        if (input.isEmpty()) return true;
+        
+        synchronized (idleLock) {
+            inFlight++;
+        }
+        
+        if (!submissions.offer(input)) {
+            finishOne();
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Waits until every submitted input has been run, and its story has been
+     * sent to be written.
+     */
+    void awaitIdle() throws InterruptedException {
+        worldReady.await();
+        synchronized (idleLock) {
+            while (inFlight > 0) {
+                idleLock.wait();
+            }
+        }
+    }
+    
+    private void finishOne() {
+        synchronized (idleLock) {
+            inFlight--;
+            if (inFlight == 0) {
+                idleLock.notifyAll();
+            }
+        }
+    }
+    
+    private void runParser() {
+        try {
+            worldReady.await();
+            while (true) {
+                String input = submissions.take();
+                ParsedInput parsed;
+                try {
+                    parsed = parse(core.world.pin(), input, parserScratch);
+                } catch (RuntimeException ex) {
+                    // One bad input shouldn't stop every input after it
+                    ex.printStackTrace(System.err);
+                    finishOne();
+                    continue;
+                }
+                // Blocks if the game logic is behind
+                parsedInputs.put(parsed);
+            }
+        } catch (InterruptedException ex) {
+            // Shutting down
+        }
+    }
+    
+    private void runLogic() {
+        try {
+            if (startup != null) {
+                try {
+                    startup.run();
+                } catch (RuntimeException ex) {
+                    ex.printStackTrace(System.err);
+                }
+                requestRender();
+            }
+            worldReady.countDown();
+            
+            while (true) {
+                ParsedInput parsed = parsedInputs.take();
+                try {
+                    perform(parsed);
+                } catch (RuntimeException ex) {
+                    // A broken verb shouldn't take the whole game down
+                    ex.printStackTrace(System.err);
+                }
+                requestRender();
+                finishOne();
+            }
+        } catch (InterruptedException ex) {
+            // Shutting down
+        }
+    }
+    
+    /**
+     * The parser stage, for one sanitized input.
+     */
+    static ParsedInput parse(WorldVersion world, String input, ParseScratch scratch) {
+        // A failure leaves the command null, which is all the logic needs
+        return new ParsedInput(input,
+                PromptContext.parseCommand(world, input, scratch).value,
+                world.number
+        );
+    }
+    
+    /**
+     * The game logic stage, for one parsed input. Only one thread may run
+     * this at a time.
+     */
+    void perform(ParsedInput parsed) {
+        // Submissions are sanitized, so there's no markup to worry about
+        core.appendParagraph("&gt; " + parsed.input);
+        
+        // The parser runs ahead of us, so the commands before this one may
+        // have changed the world since it was parsed, like taking a noun out
+        // of reach. The old parse can't be trusted then, so parse the input
+        // again against the world as it is now.
+        WorldVersion current = core.world.pin();
+        if (parsed.worldVersion < current.number) {
+            parsed = parse(current, parsed.input, logicScratch);
+        }
+        
+        if (parsed.command == null) {
+            core.appendParagraph("I don't understand that.");
+            return;
+        }
+        
+        VerbAction action = parsed.command.verb.getAction();
+        if (action == null) {
+            core.appendParagraph("You can't do that here.");
+            return;
+        }
+        action.perform(parsed.command);
+    }
+    
+    private void requestRender() {
+        // The headless sink writes as soon as something is posted, so there
+        // is only something to do when we have a window.
+        if (core.isHeadless()) return;
+        
+        // Many commands can finish between two EDT turns, so only one write
+        // is ever waiting in line.
+        if (renderScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> {
+                renderScheduled.set(false);
+                core.attemptToWriteStory();
+            });
+        }
+    }
+}
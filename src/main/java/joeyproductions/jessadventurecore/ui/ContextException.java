@@ -25,11 +25,15 @@ package joeyproductions.jessadventurecore.ui;
 
 /**
  * An exception class for handling problems in the PromptContext object.
+ * 
+ * These only ever come from ParseResult.getOrThrow(), so the stack trace
+ * would always point there, and it isn't worth filling in.
+ * 
  * @author Joseph Cramsey
  */
-class ContextException extends Exception {
+public class ContextException extends Exception {
     
     ContextException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
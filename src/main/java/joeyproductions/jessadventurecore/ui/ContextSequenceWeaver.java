@@ -24,37 +24,119 @@
 package joeyproductions.jessadventurecore.ui;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.ListIterator;
+import java.util.Set;
+import joeyproductions.jessadventurecore.world.DescriptorIndex;
+import joeyproductions.jessadventurecore.world.SyntaxObject;
 import joeyproductions.jessadventurecore.world.VocabularyWord;
 
 /**
  * A tidy utility class for assembling the SyntaxObject sequence in the final
  * major stage of the ContextObject function.
+ * A weaver can be reused for many inputs, but only by one thread at a time.
  * @author Joseph Cramsey
  */
 class ContextSequenceWeaver {
     
-    private final PromptContext context;
-    private final ListSequence<VocabularyWord> referenceSequence;
+    private PromptContext context;
     private int currentClusterIndex;
     private int currentStreakIndex;
+    // Kept in order, with a set alongside for quick membership checks
     private final ArrayList<NounProfile> profilesInCluster;
+    private final Set<NounProfile> profileSet;
+    // The clusters already added to the context's last list
+    private final Set<NounProfileCluster> clustersInLastList;
+    // Every profile marked in the last weave. The vocabulary is reused for
+    // as long as the world version stays the same, so these have to be
+    // reset before the next weave can mark them again.
+    private final Set<NounProfile> markedProfiles;
     private SequenceIterator<VocabularyWord> refSeqIter;
+    // Where each list of the reference sequence starts in the input, which
+    // list we're on, and where each list of the context starts, so failures
+    // can point at the right part of the input
+    private int[] referencePositions;
+    private int referenceListIndex;
+    private int[] contextPositions;
+    private DescriptorIndex descriptors;
+    // The nouns, by store index, described by every word in the cluster so
+    // far. The sorted array is for intersecting with posting lists, and the
+    // bitset is for asking if a specific noun is still a candidate.
+    private int[] candidates;
+    private int candidateCount;
+    private final BitSet candidateBits;
     
-    private ContextSequenceWeaver(PromptContext context, ListSequence<VocabularyWord> referenceSequence) {
-        this.context = context;
-        this.referenceSequence = referenceSequence;
-        this.currentClusterIndex = 0;
-        this.currentStreakIndex = 0;
+    ContextSequenceWeaver() {
         this.profilesInCluster = new ArrayList<>();
+        this.profileSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.clustersInLastList =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        this.markedProfiles = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.contextPositions = new int[8];
+        this.candidates = new int[16];
+        this.candidateCount = 0;
+        this.candidateBits = new BitSet();
     }
     
-    static void weave(PromptContext context, ListSequence<VocabularyWord> referenceSequence) throws ContextException, FatalContextException {
-        ContextSequenceWeaver weaver = new ContextSequenceWeaver(context, referenceSequence);
+    /**
+     * @param referencePositions where each list of the reference sequence
+     * starts in the input
+     * @return the woven context, or why the sequence couldn't be woven
+     */
+    ParseResult<PromptContext> weave(PromptContext context,
+            ListSequence<VocabularyWord> referenceSequence,
+            DescriptorIndex descriptors, int[] referencePositions) {
+        // Clean up after the last input, keeping the buffers we grew
+        this.context = context;
+        this.descriptors = descriptors;
+        this.referencePositions = referencePositions;
+        referenceListIndex = -1;
+        currentClusterIndex = 0;
+        currentStreakIndex = 0;
+        profilesInCluster.clear();
+        profileSet.clear();
+        clustersInLastList.clear();
+        for (NounProfile profile : markedProfiles) {
+            profile.reset();
+        }
+        markedProfiles.clear();
+        for (int i = 0; i < candidateCount; i++) {
+            candidateBits.clear(candidates[i]);
+        }
+        candidateCount = 0;
         
-        weaver.refSeqIter = referenceSequence.sequenceIterator();
-        weaver.loadVerbs();
-        weaver.buildClusters();
+        refSeqIter = referenceSequence.sequenceIterator();
+        loadVerbs();
+        String ambiguousPreposition = buildClusters();
+        if (ambiguousPreposition != null) {
+            // We stopped on the list with the clashing prepositions
+            return ParseResult.failed(ParseResult.Reason.AMBIGUOUS_PREPOSITION,
+                    referencePositions[referenceListIndex], ambiguousPreposition);
+        }
+        return ParseResult.ok(context);
+    }
+    
+    /**
+     * Only good until the next weave.
+     * @return where the context list at this index starts in the input
+     */
+    int getListPosition(int contextListIndex) {
+        return contextPositions[contextListIndex];
+    }
+    
+    private void addToContext(SyntaxObject obj) {
+        // A context list starts wherever its first item came from
+        if (context.isLastListEmpty()) {
+            int index = context.size() - 1;
+            if (index >= contextPositions.length) {
+                contextPositions = Arrays.copyOf(contextPositions, index * 2);
+            }
+            contextPositions[index] = referencePositions[referenceListIndex];
+        }
+        context.addToLastList(obj);
     }
     
     private void loadVerbs() {
@@ -62,9 +144,10 @@ class ContextSequenceWeaver {
             
             // Passes into list mode
             refSeqIter.next();
+            referenceListIndex++;
             
             while (refSeqIter.hasNext()) {
-                context.addToLastList(refSeqIter.next());
+                addToContext(refSeqIter.next());
             }
             
             // Passes out of list mode
@@ -90,7 +173,11 @@ class ContextSequenceWeaver {
         return false;
     }
     
-    private void buildClusters() throws FatalContextException {
+    /**
+     * @return a preposition that matched more than once, or null if
+     * everything went fine
+     */
+    private String buildClusters() {
         // Build noun profile clusters, so we don't suggest descriptors that
         // have already been typed in before.
         // Separate these clusters by non-noun-related words.
@@ -99,6 +186,7 @@ class ContextSequenceWeaver {
         
         while (refSeqIter.hasNext()) {
             refSeqIter.next();
+            referenceListIndex++;
             
             if (hasPreposition()) {
                 breakCluster();
@@ -113,13 +201,16 @@ class ContextSequenceWeaver {
                         // Add prepositions to the list.
                         // We'll be using a special algorithm later if we're
                         // adding nouns and their adjectives.
-                        context.addToLastList(word);
+                        addToContext(word);
+                    }
+                    else if (((VocabularyWord)context.getLastList().get(0)).str
+                            .equalsIgnoreCase(word.str)) {
+                        // Another verb frame shares this preposition, and
+                        // we only need one copy of it to suggest from.
+                        refSeqIter.remove();
                     }
                     else {
-                        throw new FatalContextException(
-                                "We have multiple matches for preposition \""
-                                + word.str + "\"!"
-                        );
+                        return word.str;
                     }
                 }
             }
@@ -127,6 +218,7 @@ class ContextSequenceWeaver {
                 handleNouns();
             }
         }
+        return null;
     }
     
     private void breakCluster() {
@@ -134,53 +226,90 @@ class ContextSequenceWeaver {
         currentStreakIndex = 0;
         context.addEmptyList();
         profilesInCluster.clear();
+        profileSet.clear();
+        clustersInLastList.clear();
+    }
+    
+    private void narrowCandidates(String str) {
+        // Only clear the bits we set, so this costs as much as the old
+        // candidate list, and not the size of the world.
+        for (int i = 0; i < candidateCount; i++) {
+            candidateBits.clear(candidates[i]);
+        }
+        
+        int word = descriptors.lookup(str);
+        if (currentStreakIndex == 0) {
+            candidates = descriptors.copyPostings(word, candidates);
+            candidateCount = descriptors.getPostingSize(word);
+        }
+        else {
+            candidateCount =
+                    descriptors.intersect(word, candidates, candidateCount);
+        }
+        
+        for (int i = 0; i < candidateCount; i++) {
+            candidateBits.set(candidates[i]);
+        }
     }
     
     private void handleNouns() {
         boolean actualNounFound = false;
         
-        // Gather noun clusters, if no prepositions were found here
+        // Every word at this position has the same spelling, because they
+        // were all matched against the same stretch of input. So, one
+        // posting list intersection narrows the cluster down to the nouns
+        // this word also describes.
+        ArrayList<VocabularyWord> position = refSeqIter.peekList();
+        if (position.isEmpty()) {
+            currentStreakIndex++;
+            return;
+        }
+        VocabularyWord spelling = position.get(0);
+        narrowCandidates(spelling.str);
+        
+        // Gather noun clusters, if no prepositions were found here.
+        // Each word only belongs to its own profile, so one pass over the
+        // words and one pass over the profiles covers everything.
         while (refSeqIter.hasNext()) {
             VocabularyWord word = refSeqIter.next();
-
+            NounProfile profile = word.nounProfile;
+            
             // Add it to the cluster's profile list so it can be marked
             // as missed, if necessary.
-            if (!profilesInCluster.contains(word.nounProfile)) {
-                profilesInCluster.add(word.nounProfile);
+            if (profileSet.add(profile)) {
+                profilesInCluster.add(profile);
+                markedProfiles.add(profile);
             }
-
-            // Make the necessary marks
-            ListIterator<NounProfile> profileIter =
-                    profilesInCluster.listIterator();
-            while (profileIter.hasNext()) {
-                NounProfile profile = profileIter.next();
-
-                NounProfileCluster cluster =
-                        profile.getClusterFromIndex(currentClusterIndex);
-
-                if (!context.lastListContains(cluster)) {
-                    context.addToLastList(cluster);
-                }
-
-                if (cluster.isRelevantTo(word)) {
-                    profile.markAsMentioned(
-                            word,
-                            currentClusterIndex, currentStreakIndex
-                    );
-                }
-                else {
-                    profile.markAsMissed(
-                            currentClusterIndex,
-                            currentStreakIndex
-                    );
-                }
-
-                if (profile.actualNouns.contains(word)) {
-                    // This is the actual noun, so we will end the noun
-                    // cluster here.
-                    cluster.isComplete = true;
-                    actualNounFound = true;
-                }
+            
+            if (profile.actualNouns.contains(word)) {
+                // This is the actual noun, so we will end the noun
+                // cluster here.
+                profile.getClusterFromIndex(currentClusterIndex)
+                        .isComplete = true;
+                actualNounFound = true;
+            }
+        }
+        
+        // Make the necessary marks
+        for (NounProfile profile : profilesInCluster) {
+            NounProfileCluster cluster =
+                    profile.getClusterFromIndex(currentClusterIndex);
+            
+            if (clustersInLastList.add(cluster)) {
+                addToContext(cluster);
+            }
+            
+            if (candidateBits.get(profile.noun.getIndex())) {
+                profile.markAsMentioned(
+                        spelling,
+                        currentClusterIndex, currentStreakIndex
+                );
+            }
+            else {
+                profile.markAsMissed(
+                        currentClusterIndex,
+                        currentStreakIndex
+                );
             }
         }
         
@@ -23,8 +23,8 @@
  */
 package joeyproductions.jessadventurecore.ui;
 
-import java.util.Iterator;
-import java.util.TreeSet;
+import java.util.List;
+import joeyproductions.jessadventurecore.world.VerbLexicon;
 import joeyproductions.jessadventurecore.world.VocabularyWord;
 
 /**
@@ -40,73 +40,13 @@ class ContextVocabBuilder {
         //
     }
     
-    static ListSequence<VocabularyWord> buildVocabSequence
-        (String relevantPart, TreeSet<VocabularyWord> vocab) throws ContextException {
+    static ParseResult<List<ListSequence<VocabularyWord>>> buildVocabSequences
+        (String relevantPart, Tokenizer tokens, VocabularyIndex index,
+                VerbLexicon lexicon, int limit) {
         
-        ListSequence<VocabularyWord> referenceSequence = new ListSequence<>();
-        
-        while (relevantPart.length() > 0) {
-            boolean foundMatch = false;
-            
-            referenceSequence.addEmptyList();
-            Iterator<VocabularyWord> iter = vocab.iterator();
-            int longestLength = vocab.first().str.length();
-            
-            // Find matches
-            while (iter.hasNext()) {
-                VocabularyWord word = iter.next();
-                int wordLength = word.str.length();
-                
-                if (wordLength > relevantPart.length()) {
-                    // This word is too long; it won't match.
-                    continue;
-                }
-                
-                if (foundMatch && wordLength < longestLength) {
-                    // If we found a match before, so we cannot match shorter
-                    // words, because they will always be less of a match.
-                    break;
-                }
-                
-                if (relevantPart.toLowerCase().startsWith(word.str.toLowerCase())) {
-                    foundMatch = true;
-                    referenceSequence.addToLastList(word);
-                    longestLength = wordLength;
-                }
-                
-                if (!foundMatch) {
-                    // If we have not yet found a match, we can keep adjusting
-                    // the last longest length we were comparing with.
-                    longestLength = wordLength;
-                }
-            }
-            
-            if (!foundMatch) {
-                // We have lost our way lol.
-                // We could not match anything with what the player wrote.
-                throw new ContextException("No vocabulary match found");
-            }
-            
-            // Crop what we've matched
-            relevantPart = relevantPart.substring(longestLength);
-            
-            // If we actually did this right, the new relevantPart should
-            // start with a space (or be empty), because we should be
-            // matching whole words. If this check fails, then the player
-            // wrote a longer word than anything we could match with.
-            if (relevantPart.length() > 0) {
-                if (relevantPart.charAt(0) != ' ') {
-                    // Aha! We have cropped off the beginning of a long word
-                    // that we do not recognize. We are lost.
-                    throw new ContextException("Failed to match whole word. Remainder: \"" + relevantPart + "\"");
-                }
-            }
-            
-            // With our check for success, we know we can continue with the
-            // rest of the input.
-            relevantPart = relevantPart.trim();
-        }
-        
-        return referenceSequence;
+        // Greedy longest-match would lose valid readings whenever a shorter
+        // word was needed to finish the input, so let the chart parser find
+        // every reading, best first.
+        return new ChartParser(relevantPart, tokens, index, lexicon).getParses(limit);
     }
 }
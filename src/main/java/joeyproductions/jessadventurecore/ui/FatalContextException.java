@@ -31,6 +31,8 @@ package joeyproductions.jessadventurecore.ui;
 public class FatalContextException extends Exception {
     
     FatalContextException(String message) {
-        super(message);
+        // Like ContextException, the stack trace would only ever lead back
+        // to ParseResult, and the message says what went wrong.
+        super(message, null, false, false);
     }
 }
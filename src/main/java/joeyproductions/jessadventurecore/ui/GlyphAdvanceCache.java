@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.awt.FontMetrics;
+
+/**
+ * Prefix sums of glyph advances for a line of input, so we can find how far
+ * across the line a character sits without measuring the string again.
+ * When the line changes, only the advances after the first changed
+ * character get worked out again.
+ * @author Joseph Cramsey
+ */
+class GlyphAdvanceCache {
+    
+    private FontMetrics metrics;
+    private String text;
+    // prefixSums[i] is the width of the first i characters
+    private int[] prefixSums;
+    
+    GlyphAdvanceCache() {
+        metrics = null;
+        text = "";
+        prefixSums = new int[64];
+    }
+    
+    int getAdvance(FontMetrics newMetrics, String newText, int index) {
+        int unchanged = 0;
+        
+        if (metrics != null && metrics.getFont().equals(newMetrics.getFont())) {
+            int limit = Math.min(text.length(), newText.length());
+            while (unchanged < limit
+                    && text.charAt(unchanged) == newText.charAt(unchanged)) {
+                unchanged++;
+            }
+        }
+        metrics = newMetrics;
+        
+        if (prefixSums.length <= newText.length()) {
+            int[] grown = new int[Math.max(prefixSums.length * 2, newText.length() + 1)];
+            System.arraycopy(prefixSums, 0, grown, 0, unchanged + 1);
+            prefixSums = grown;
+        }
+        
+        for (int i = unchanged; i < newText.length(); i++) {
+            prefixSums[i + 1] = prefixSums[i] + metrics.charWidth(newText.charAt(i));
+        }
+        text = newText;
+        
+        if (index < 0) index = 0;
+        if (index > text.length()) index = text.length();
+        return prefixSums[index];
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Groups items by an int hash, without boxing the hashes, so looking up a
+ * hash straight out of the tokenizer allocates nothing.
+ * 
+ * The slots are open-addressed, and probed one after another. Each slot
+ * holds a hash, and where its bucket is in the bucket list, or -1 if the
+ * slot is empty. Items are only ever added while the table is being built,
+ * so there's no removing to worry about.
+ * 
+ * It's public so the verb lexicon can keep its table of phrase first tokens
+ * in one, keyed by the same hash the tokenizer hands out.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class HashBuckets<T> {
+    
+    private int[] hashes;
+    private int[] bucketIndices;
+    private final ArrayList<ArrayList<T>> buckets;
+    
+    public HashBuckets() {
+        this.hashes = new int[16];
+        this.bucketIndices = new int[16];
+        Arrays.fill(bucketIndices, -1);
+        this.buckets = new ArrayList<>();
+    }
+    
+    public void add(int hash, T item) {
+        int slot = findSlot(hash);
+        if (bucketIndices[slot] < 0) {
+            bucketIndices[slot] = buckets.size();
+            hashes[slot] = hash;
+            buckets.add(new ArrayList<>());
+            // Keep at least half the slots empty, so probes stay short
+            if (buckets.size() * 2 > hashes.length) {
+                grow();
+                slot = findSlot(hash);
+            }
+        }
+        buckets.get(bucketIndices[slot]).add(item);
+    }
+    
+    /**
+     * @return every item added with this hash, or an empty list
+     */
+    public List<T> get(int hash) {
+        int bucket = bucketIndices[findSlot(hash)];
+        if (bucket < 0) return Collections.emptyList();
+        return buckets.get(bucket);
+    }
+    
+    private int findSlot(int hash) {
+        int mask = hashes.length - 1;
+        // Spread the bits, since the low bits of short strings' hashes
+        // don't vary much
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (bucketIndices[slot] >= 0 && hashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    
+    private void grow() {
+        int[] oldHashes = hashes;
+        int[] oldBucketIndices = bucketIndices;
+        hashes = new int[oldHashes.length * 2];
+        bucketIndices = new int[oldHashes.length * 2];
+        Arrays.fill(bucketIndices, -1);
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldBucketIndices[i] < 0) continue;
+            int slot = findSlot(oldHashes[i]);
+            hashes[slot] = oldHashes[i];
+            bucketIndices[slot] = oldBucketIndices[i];
+        }
+    }
+}
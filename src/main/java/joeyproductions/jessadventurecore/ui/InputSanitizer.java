@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+/**
+ * Decides which characters the player can type, using a lookup table instead
+ * of a big switch, and strips everything else out of pasted text.
+ * 
+ * The static checks are shared by the prompt and by world validation. An
+ * instance holds a reusable buffer for filtering, so it should stay on one
+ * thread, like the EDT for the prompt's document filter.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class InputSanitizer {
+    
+    private static final boolean[] IS_TYPABLE = new boolean[128];
+    
+    static {
+        IS_TYPABLE[' '] = true;
+        IS_TYPABLE['\''] = true;
+        IS_TYPABLE['-'] = true;
+        for (char c = 'a'; c <= 'z'; c++) {
+            IS_TYPABLE[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            IS_TYPABLE[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            IS_TYPABLE[c] = true;
+        }
+    }
+    
+    private char[] buffer;
+    
+    public InputSanitizer() {
+        this.buffer = new char[256];
+    }
+    
+    public static boolean isTypable(char c) {
+        return c < IS_TYPABLE.length && IS_TYPABLE[c];
+    }
+    
+    /**
+     * @return true if every character is typable, with no leading or
+     * repeated spaces
+     */
+    public static boolean isValidString(CharSequence str) {
+        boolean wasLastCharASpace = true; // Will invalidate leading spaces
+        
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (!isTypable(c)) return false;
+            boolean isSpace = c == ' ';
+            // Forbids repetition of spaces
+            if (isSpace && wasLastCharASpace) return false;
+            wasLastCharASpace = isSpace;
+        }
+        return true;
+    }
+    
+    /**
+     * Removes every character that can't be typed.
+     * @return the same string if nothing needed removing, which is almost
+     * always the case for typing. Otherwise, a new string, made from the
+     * reused buffer, so a big paste costs one pass and one allocation.
+     */
+    public String filter(String str) {
+        if (str == null) return null;
+        
+        int length = str.length();
+        int firstBad = 0;
+        while (firstBad < length && isTypable(str.charAt(firstBad))) {
+            firstBad++;
+        }
+        if (firstBad == length) return str;
+        
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        
+        str.getChars(0, firstBad, buffer, 0);
+        int filteredLength = firstBad;
+        for (int i = firstBad + 1; i < length; i++) {
+            char c = str.charAt(i);
+            if (isTypable(c)) {
+                buffer[filteredLength++] = c;
+            }
+        }
+        
+        return new String(buffer, 0, filteredLength);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+/**
+ * Every kind of story panel instruction, flattened into one list so the story
+ * writer can dispatch with a single switch.
+ * @author Joseph Cramsey
+ */
+public enum InstructionKind {
+    
+    APPEND,
+    APPEND_DIRECTLY,
+    APPEND_PARAGRAPH,
+    APPEND_OTHER,
+    CLEAR_SCREEN,
+    PRESS_TO_CONTINUE;
+    
+    boolean isPost() {
+        switch (this) {
+            case APPEND:
+            case APPEND_DIRECTLY:
+            case APPEND_PARAGRAPH:
+            case APPEND_OTHER:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
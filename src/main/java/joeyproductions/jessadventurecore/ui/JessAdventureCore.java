@@ -34,6 +34,10 @@ import java.awt.Font;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -52,6 +56,7 @@ import javax.swing.MenuSelectionManager;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import joeyproductions.jessadventurecore.world.World;
+import joeyproductions.jessadventurecore.world.WorldSnapshot;
 
 /**
  * The core interface for the adventure.
@@ -82,6 +87,10 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
     public static final int DARK_HEADER_VALUE = 255;
     public static boolean DARK_MODE = true;
     public static int MAX_SUGGESTION_COUNT = 3;
+    // Set this before initAdventure() to journal the transcript to a file
+    public static Path TRANSCRIPT_JOURNAL_PATH = null;
+    // If true, the journaled transcript is loaded back into the story panel
+    public static boolean RESTORE_TRANSCRIPT = false;
     
     private static final String[] FONT_IDS = new String[] {
         "Button.font",
@@ -121,7 +130,6 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
     private static final float MAP_COLUMN_FRACTION = 0.2f;
     private static final float STORY_COLUMN_FRACTION = 1f
             - (INVENTORY_COLUMN_FRACTION + MAP_COLUMN_FRACTION);
-    private static final int MINIMUM_WINDOW_HEIGHT = 400;
     
     public static JessAdventureCore CORE;
     public static RefreshThread REFRESH_THREAD;
@@ -129,12 +137,17 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
     String author;
     public final World world;
     private JFrame frame;
+    private LayoutMetrics layoutMetrics;
     private JLabel roomLabel;
     private JPanel storyColumn;
     
     private JCheckBoxMenuItem darkModeItem;
     
     private final StoryPanelBuffer storyPanelBuffer;
+    private final boolean isHeadless;
+    // While set, headless story waits in the buffer until it's written out
+    private volatile boolean holdHeadlessStory;
+    private StorySink storySink;
     
     private JLayeredPane layers;
     
@@ -145,27 +158,53 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
     private boolean promptHasChanged;
     
     private PlayerPrompt playerPrompt;
+    private CommandPipeline commandPipeline;
     
     private JPanel mapColumn;
     
-    private JessAdventureCore(String name, String author, World world) {
+    private JessAdventureCore(String name, String author, World world, boolean isHeadless) {
         this.name = name;
         this.author = author;
         this.world = world;
+        this.isHeadless = isHeadless;
+        this.holdHeadlessStory = false;
         this.storyPanelBuffer = new StoryPanelBuffer();
         this.performedFirstScroll = false;
         this.somethingWasPosted = false;
         this.promptHasChanged = false;
     }
     
+    /**
+     * Starts the adventure with a world that was saved as a snapshot, like
+     * the one written at build time, so none of it has to be built or
+     * indexed at startup.
+     */
+    public static void initAdventure(String name, String author, URL worldSnapshot) {
+        World world;
+        try {
+            world = WorldSnapshot.read(worldSnapshot);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not load world snapshot "
+                    + worldSnapshot + "!", ex);
+        }
+        initAdventure(name, author, world);
+    }
+    
     public static void initAdventure(String name, String author, World world) {
         System.out.println("Beginning adventure: " + name + " by " + author + "...");
-        JessAdventureCore core = new JessAdventureCore(name, author, world);
+        JessAdventureCore core = new JessAdventureCore(name, author, world, false);
+        
+        if (TRANSCRIPT_JOURNAL_PATH != null) {
+            core.storyPanelBuffer.openJournal(TRANSCRIPT_JOURNAL_PATH, RESTORE_TRANSCRIPT);
+        }
         
         ArrayList<HabitualRefresher> refreshers = new ArrayList<>();
         REFRESH_THREAD = new RefreshThread(refreshers);
         
         core.frame = new JFrame(name);
+        core.layoutMetrics = new LayoutMetrics(
+                core.frame, STORY_COLUMN_FRACTION, MAP_COLUMN_FRACTION
+        );
         CORE = core;
         SwingUtilities.invokeLater(() -> {
             core.updateLookAndFeel();
@@ -179,10 +218,11 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
             
             ScrollPair<StoryPanel> storyPanelPair = StoryPanel.createStoryPanel(
                     "<h1>" + name + "</h1><h2>by " + author + "</h2>",
-                    core.layers
+                    core.layers, core.layoutMetrics
             );
             
             core.storyPanel = storyPanelPair.windowContent;
+            core.storySink = core.storyPanel;
             core.storyPanelScroll = storyPanelPair.scrollPane;
             core.playerPrompt = new PlayerPrompt(core.storyPanelBuffer, core, core.layers);
             
@@ -196,18 +236,12 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
             core.storyColumn = new JPanel(new BorderLayout()) {
                 @Override
                 public Dimension getMinimumSize() {
-                    return new Dimension(
-                            core.getFractionWidth(STORY_COLUMN_FRACTION),
-                            MINIMUM_WINDOW_HEIGHT
-                    );
+                    return core.layoutMetrics.getStoryColumnMinimum();
                 }
                 
                 @Override
                 public Dimension getPreferredSize() {
-                    return new Dimension(
-                            core.getFractionWidth(STORY_COLUMN_FRACTION),
-                            core.getHeight()
-                    );
+                    return core.layoutMetrics.getStoryColumnPreferred();
                 }
                 
                 @Override
@@ -238,18 +272,12 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
             core.mapColumn = new JPanel() {
                 @Override
                 public Dimension getMinimumSize() {
-                    return new Dimension(
-                            core.getFractionWidth(MAP_COLUMN_FRACTION),
-                            MINIMUM_WINDOW_HEIGHT
-                    );
+                    return core.layoutMetrics.getMapColumnMinimum();
                 }
                 
                 @Override
                 public Dimension getPreferredSize() {
-                    return new Dimension(
-                            core.getFractionWidth(MAP_COLUMN_FRACTION),
-                            core.getHeight()
-                    );
+                    return core.layoutMetrics.getMapColumnPreferred();
                 }
                 
                 @Override
@@ -263,6 +291,8 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
             JPanel mapFramer = new JPanel(new BorderLayout()) {
                 @Override
                 public Dimension getPreferredSize() {
+                    // Layout managers may keep or change what we hand them,
+                    // so every caller gets its own
                     int width = core.mapColumn.getWidth();
                     return new Dimension(width, width);
                 }
@@ -320,13 +350,51 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
         System.out.println("Main init trigger has expired successfully!");
     }
     
-    private void postUIInit() {
-        System.out.println("Doing post-UI initialization...");
+    /**
+     * Starts the adventure without any window, sending the story to a stream
+     * as text instead. This does not need a display, so it can run on
+     * servers and in automated playtests.
+     * @param useAnsi if true, the text will have ANSI styling for terminals
+     */
+    public static void initHeadlessAdventure(String name, String author,
+            World world, OutputStream out, boolean useAnsi) {
+        JessAdventureCore core = new JessAdventureCore(name, author, world, true);
         
+        if (TRANSCRIPT_JOURNAL_PATH != null) {
+            core.storyPanelBuffer.openJournal(TRANSCRIPT_JOURNAL_PATH, RESTORE_TRANSCRIPT);
+        }
+        
+        core.storySink = new TextStorySink(out, useAnsi);
+        CORE = core;
+        
+        core.storySink.appendOther("<h1>" + name + "</h1><h2>by " + author + "</h2>");
+        core.prestart();
+        core.attemptToWriteStory();
+        
+        // The world is already started, so the pipeline has nothing to do
+        // before taking commands.
+        core.commandPipeline = new CommandPipeline(core);
+        core.commandPipeline.start(null);
+    }
+    
+    private void prestart() {
         if (world == null) {
             throw new RuntimeException("World cannot be null!");
         }
         world.prestartWorld();
+    }
+    
+    private void postUIInit() {
+        System.out.println("Doing post-UI initialization...");
+        
+        // Game logic never runs on the EDT, even when starting up, so a slow
+        // start doesn't freeze the window.
+        commandPipeline = new CommandPipeline(this);
+        commandPipeline.start(this::startAdventure);
+    }
+    
+    private void startAdventure() {
+        prestart();
         
         appendParagraph("Testing first paragraph.");
         appendParagraph("Testing second paragraph.");
@@ -342,8 +410,6 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
         append("The screen has cleared.");*/
         
         System.out.println("Adventure has begun!");
-        
-        attemptToWriteStory();
     }
     
     public int getWidth() {
@@ -381,7 +447,7 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
     }
     
     void updateStyle() {
-        FONT_SIZE_MULTIPLIER = (float)Toolkit.getDefaultToolkit().getScreenSize().width / 1920f;
+        FONT_SIZE_MULTIPLIER = (float)layoutMetrics.getScreenWidth() / 1920f;
         
         STORY_FONT_SIZE = Math.round((float)FULL_SIZE_FONT_SIZE * FONT_SIZE_MULTIPLIER);
         
@@ -403,43 +469,39 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
     }
     
     void attemptToWriteStory() {
-        RefreshThread.startPause(this);
+        if (!isHeadless) RefreshThread.startPause(this);
         while (storyPanelBuffer.pauseReason == null && !storyPanelBuffer.buffer.isEmpty()) {
             StoryPanelInstruction instr = storyPanelBuffer.buffer.poll();
-            boolean thisWasAPost = true;
             
-            if (instr instanceof PostLineInstruction) {
-                PostLineInstruction post = (PostLineInstruction)instr;
-                switch (post.method) {
-                    case PostLineInstruction.METHOD_APPEND:
-                        storyPanel.append(post.content);
-                        break;
-                    case PostLineInstruction.METHOD_APPEND_DIRECTLY:
-                        storyPanel.appendDirectly(post.content);
-                        break;
-                    case PostLineInstruction.METHOD_APPEND_PARAGRAPH:
-                        storyPanel.appendParagraph(post.content);
-                        break;
-                    case PostLineInstruction.METHOD_APPEND_OTHER:
-                        storyPanel.appendOther(post.content);
-                        break;
-                    default:
-                        throw new RuntimeException("Unrecognized post line method ID: " + post.method);
-                }
-            }
-            else if (instr instanceof ClearScreenInstruction) {
-                storyPanel.clearScreen();
-            }
-            else if (instr instanceof PressToContinueInstruction) {
-                changePauseReason(instr);
-            }
-            else {
-                thisWasAPost = false;
+            // The instruction hierarchy is sealed, so every kind is
+            // accounted for here.
+            switch (instr.getKind()) {
+                case APPEND:
+                    storySink.append(((PostLineInstruction)instr).content);
+                    break;
+                case APPEND_DIRECTLY:
+                    storySink.appendDirectly(((PostLineInstruction)instr).content);
+                    break;
+                case APPEND_PARAGRAPH:
+                    storySink.appendParagraph(((PostLineInstruction)instr).content);
+                    break;
+                case APPEND_OTHER:
+                    storySink.appendOther(((PostLineInstruction)instr).content);
+                    break;
+                case CLEAR_SCREEN:
+                    storySink.clearScreen();
+                    break;
+                case PRESS_TO_CONTINUE:
+                    if (storySink.pressToContinue()) {
+                        changePauseReason(instr);
+                    }
+                    break;
             }
             
-            somethingWasPosted |= thisWasAPost;
+            somethingWasPosted = true;
         }
-        RefreshThread.endPause(this);
+        storySink.flush();
+        if (!isHeadless) RefreshThread.endPause(this);
     }
     
     private void changePauseReason(StoryPanelInstruction reason) {
@@ -482,27 +544,79 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
     }
     
     public void append(String content) {
-        storyPanelBuffer.buffer.add(new PostLineInstruction(content, PostLineInstruction.METHOD_APPEND));
+        storyPanelBuffer.queue(new PostLineInstruction(content, InstructionKind.APPEND));
+        writeIfHeadless();
     }
     
     public void appendDirectly(String content) {
-        storyPanelBuffer.buffer.add(new PostLineInstruction(content, PostLineInstruction.METHOD_APPEND_DIRECTLY));
+        storyPanelBuffer.queue(new PostLineInstruction(content, InstructionKind.APPEND_DIRECTLY));
+        writeIfHeadless();
     }
     
     public void appendParagraph(String content) {
-        storyPanelBuffer.buffer.add(new PostLineInstruction(content, PostLineInstruction.METHOD_APPEND_PARAGRAPH));
+        storyPanelBuffer.queue(new PostLineInstruction(content, InstructionKind.APPEND_PARAGRAPH));
+        writeIfHeadless();
     }
     
     public void appendOther(String content) {
-        storyPanelBuffer.buffer.add(new PostLineInstruction(content, PostLineInstruction.METHOD_APPEND_OTHER));
+        storyPanelBuffer.queue(new PostLineInstruction(content, InstructionKind.APPEND_OTHER));
+        writeIfHeadless();
     }
     
     public void clearScreen() {
-        storyPanelBuffer.buffer.add(new ClearScreenInstruction());
+        storyPanelBuffer.queue(new ClearScreenInstruction());
+        writeIfHeadless();
     }
     
     public void pressToContinue() {
-        storyPanelBuffer.buffer.add(new PressToContinueInstruction());
+        storyPanelBuffer.queue(new PressToContinueInstruction());
+        writeIfHeadless();
+    }
+    
+    /**
+     * Sends an input through the parser and on to the game logic, the same
+     * as if the player typed it and pressed Enter. This never blocks.
+     * @return false if too many commands are still waiting to be run
+     */
+    public boolean submitCommand(String input) {
+        return commandPipeline.submit(input);
+    }
+    
+    /**
+     * Waits until every submitted command has been run.
+     */
+    public void awaitCommands() throws InterruptedException {
+        commandPipeline.awaitIdle();
+    }
+    
+    /**
+     * @return the prompt's suggestion cache, for measuring how well it
+     * works, or null if there is no prompt
+     */
+    public SuggestionCache getSuggestionCache() {
+        return playerPrompt == null ? null : playerPrompt.suggestionCache;
+    }
+    
+    boolean isHeadless() {
+        return isHeadless;
+    }
+    
+    CommandPipeline getCommandPipeline() {
+        return commandPipeline;
+    }
+    
+    /**
+     * Lets the walkthrough replay time writing the story separately from
+     * the game logic that posts it.
+     */
+    void setHoldHeadlessStory(boolean holdHeadlessStory) {
+        this.holdHeadlessStory = holdHeadlessStory;
+    }
+    
+    private void writeIfHeadless() {
+        // Without a window, there is nothing to wait on, so the story can
+        // stream out as soon as it is written.
+        if (isHeadless && !holdHeadlessStory) attemptToWriteStory();
     }
 
     @Override
@@ -513,6 +627,17 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
                 attemptToWriteStory();
             }
         }
+        else if (e.getSource() == playerPrompt.textField) {
+            // The player pressed Enter
+            if (commandPipeline == null) return;
+            if (commandPipeline.submit(playerPrompt.textField.getText())) {
+                playerPrompt.textField.setText("");
+            }
+            else {
+                // Still busy, so hang onto the input for another try
+                Toolkit.getDefaultToolkit().beep();
+            }
+        }
         else if (e.getSource() == darkModeItem) {
             DARK_MODE = !DARK_MODE;
             darkModeItem.setState(DARK_MODE);
@@ -528,92 +653,18 @@ public class JessAdventureCore implements ActionListener, HabitualRefresher {
         return str;
     }
     
-    public static boolean isValidString(String str) { //TODO: Make an iterator out of this, and reuse is PlayerPrompt.getSterileInput()
-        boolean wasLastCharASpace = true; // Will invalidate leading spaces
-        
-        for (int i = 0; i < str.length(); i++) {
-            char c = str.charAt(i);
-            boolean isSpace = Character.isWhitespace(c);
-            // spaceGate: Forbids repetition of spaces
-            boolean spaceGate = (!wasLastCharASpace && isSpace) || !isSpace;
-            if (!(isValidInputCharacter(c) && spaceGate)) {
-                return false;
-            }
-            wasLastCharASpace = isSpace;
-        }
-        return true;
+    public static boolean isValidString(String str) {
+        return InputSanitizer.isValidString(str);
     }
     
     public static boolean isValidInputCharacter(char c) {
-        switch (c) {
-            default:
-                return false;
-            case ' ':
-            case 'a':
-            case 'b':
-            case 'c':
-            case 'd':
-            case 'e':
-            case 'f':
-            case 'g':
-            case 'h':
-            case 'i':
-            case 'j':
-            case 'k':
-            case 'l':
-            case 'm':
-            case 'n':
-            case 'o':
-            case 'p':
-            case 'q':
-            case 'r':
-            case 's':
-            case 't':
-            case 'u':
-            case 'v':
-            case 'w':
-            case 'x':
-            case 'y':
-            case 'z':
-            case 'A':
-            case 'B':
-            case 'C':
-            case 'D':
-            case 'E':
-            case 'F':
-            case 'G':
-            case 'H':
-            case 'I':
-            case 'J':
-            case 'K':
-            case 'L':
-            case 'M':
-            case 'N':
-            case 'O':
-            case 'P':
-            case 'Q':
-            case 'R':
-            case 'S':
-            case 'T':
-            case 'U':
-            case 'V':
-            case 'W':
-            case 'X':
-            case 'Y':
-            case 'Z':
-            case '1':
-            case '2':
-            case '3':
-            case '4':
-            case '5':
-            case '6':
-            case '7':
-            case '8':
-            case '9':
-            case '0':
-            case '\'':
-            case '-':
-                return true;
-        }
+        return InputSanitizer.isTypable(c);
+    }
+    
+    /**
+     * @return the hash the tokenizer gives this spelling, which ignores case
+     */
+    public static int foldedHash(CharSequence str) {
+        return Tokenizer.foldedHash(str);
     }
 }
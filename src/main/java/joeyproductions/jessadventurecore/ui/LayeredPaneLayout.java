@@ -4,7 +4,6 @@ import java.awt.Component;
 import java.awt.Container;
 import java.awt.Dimension;
 import java.awt.LayoutManager;
-import java.awt.Rectangle;
 
 /**
  * A handy layout manager for a layered pane.
@@ -27,7 +26,7 @@ class LayeredPaneLayout implements LayoutManager {
     @Override
     public void layoutContainer(final Container container) {
             for (final Component component : container.getComponents()) {
-                    component.setBounds(new Rectangle(0, 0, target.getWidth(), target.getHeight()));
+                    component.setBounds(0, 0, target.getWidth(), target.getHeight());
             }
     }
 
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.awt.Dimension;
+import java.awt.Toolkit;
+import javax.swing.JFrame;
+
+/**
+ * A cache of the sizes that the main window columns ask for.
+ * Layout passes happen constantly while the story is being written, so
+ * instead of asking the toolkit for the screen size every time, we only work
+ * the sizes out again when the frame changes size, or moves to a different
+ * screen.
+ * 
+ * Like Swing's own getters, every Dimension handed out is a fresh copy, so
+ * nothing a layout manager does to one can leak into the cache.
+ * 
+ * @author Joseph Cramsey
+ */
+class LayoutMetrics {
+    
+    private static final int MINIMUM_WINDOW_HEIGHT = 400;
+    
+    private final JFrame frame;
+    private final float storyColumnFraction;
+    private final float mapColumnFraction;
+    
+    private boolean screenChanged;
+    private int screenWidth;
+    private int screenHeight;
+    private int frameWidth;
+    private int frameHeight;
+    
+    private int storyColumnWidth;
+    private int mapColumnWidth;
+    private int storyPanelMinimumWidth;
+    
+    LayoutMetrics(JFrame frame, float storyColumnFraction, float mapColumnFraction) {
+        this.frame = frame;
+        this.storyColumnFraction = storyColumnFraction;
+        this.mapColumnFraction = mapColumnFraction;
+        this.screenChanged = true;
+        this.frameWidth = -1;
+        this.frameHeight = -1;
+        
+        // Moving to another screen swaps out the graphics configuration
+        frame.addPropertyChangeListener("graphicsConfiguration", (e) -> {
+            invalidateScreen();
+        });
+    }
+    
+    void invalidateScreen() {
+        screenChanged = true;
+    }
+    
+    private void refresh() {
+        // Reading the frame's size is cheap, so checking it here catches
+        // resizes even if the layout pass beats the resize event.
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        
+        if (!screenChanged && width == frameWidth && height == frameHeight) {
+            return;
+        }
+        
+        if (screenChanged) {
+            Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+            screenWidth = screenSize.width;
+            screenHeight = screenSize.height;
+            screenChanged = false;
+        }
+        
+        frameWidth = width;
+        frameHeight = height;
+        
+        storyColumnWidth = getFractionWidth(storyColumnFraction);
+        mapColumnWidth = getFractionWidth(mapColumnFraction);
+        storyPanelMinimumWidth = Math.round((float)screenHeight * (2f / 5f));
+    }
+    
+    int getFractionWidth(float fraction) {
+        if (fraction > 1f) fraction = 1f;
+        if (fraction < 0) fraction = 0;
+        return Math.round(frameWidth * fraction);
+    }
+    
+    int getScreenWidth() {
+        refresh();
+        return screenWidth;
+    }
+    
+    int getScreenHeight() {
+        refresh();
+        return screenHeight;
+    }
+    
+    Dimension getStoryColumnMinimum() {
+        refresh();
+        return new Dimension(storyColumnWidth, MINIMUM_WINDOW_HEIGHT);
+    }
+    
+    Dimension getStoryColumnPreferred() {
+        refresh();
+        return new Dimension(storyColumnWidth, frameHeight);
+    }
+    
+    Dimension getMapColumnMinimum() {
+        refresh();
+        return new Dimension(mapColumnWidth, MINIMUM_WINDOW_HEIGHT);
+    }
+    
+    Dimension getMapColumnPreferred() {
+        refresh();
+        return new Dimension(mapColumnWidth, frameHeight);
+    }
+    
+    Dimension getStoryPanelMinimum() {
+        refresh();
+        return new Dimension(storyPanelMinimumWidth, storyPanelMinimumWidth);
+    }
+    
+    int getStoryPanelPreferredWidth(int availableWidth) {
+        refresh();
+        int screenRatio = Math.round((float)screenHeight * (3f / 5f));
+        return Math.min(availableWidth, screenRatio);
+    }
+}
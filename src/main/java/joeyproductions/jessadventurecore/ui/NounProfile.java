@@ -52,11 +52,19 @@ public class NounProfile implements Comparable<NounProfile> {
     
     private NounProfileCluster getLastCluster(int clusterIndex) {
         if (clusters.isEmpty()) {
-            clusters.add(new NounProfileCluster(clusterIndex, wordList));
+            clusters.add(new NounProfileCluster(noun, clusterIndex, wordList));
         }
         return clusters.get(clusters.size() - 1);
     }
     
+    /**
+     * Forgets the clusters from the last parse. Contexts from that parse
+     * keep the clusters they already have.
+     */
+    void reset() {
+        clusters.clear();
+    }
+    
     NounProfileCluster markAsMentioned(VocabularyWord word,
             int clusterIndex, int streakIndex) {
         NounProfileCluster cluster = getClusterFromIndex(clusterIndex);
@@ -74,7 +82,7 @@ public class NounProfile implements Comparable<NounProfile> {
         NounProfileCluster cluster = getLastCluster(clusterIndex);
         
         if (cluster.clusterIndex < clusterIndex) {
-            cluster = new NounProfileCluster(clusterIndex, wordList);
+            cluster = new NounProfileCluster(noun, clusterIndex, wordList);
             clusters.add(cluster);
         }
         
@@ -24,46 +24,47 @@
 package joeyproductions.jessadventurecore.ui;
 
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.ListIterator;
-import java.util.TreeSet;
+import java.util.BitSet;
+import java.util.Collection;
+import joeyproductions.jessadventurecore.world.Noun;
 import joeyproductions.jessadventurecore.world.SyntaxObject;
-import joeyproductions.jessadventurecore.world.VocabularySimpleComparator;
 import joeyproductions.jessadventurecore.world.VocabularyWord;
 
 /**
  * A class for labeling the same noun profile in multiple noun phrase clusters.
+ * Which of the noun's words have been mentioned, and which streak positions
+ * have been hit, are both kept as bitsets.
  * @author Joseph Cramsey
  */
 public class NounProfileCluster implements SyntaxObject {
     
+    final Noun noun;
     final int clusterIndex;
-    final ArrayList<Boolean> marks;
-    final TreeSet<VocabularyWord> unmentioned;
-    final TreeSet<VocabularyWord> mentioned;
+    private final ArrayList<VocabularyWord> wordList;
+    // Bit i is set if the word at wordList[i] has been mentioned
+    private final BitSet mentioned;
+    // Bit i is set if the noun was hit at streak position i
+    private final BitSet marks;
+    private int markCount;
     
     boolean isComplete;
     
-    NounProfileCluster(int clusterIndex, ArrayList<VocabularyWord> wordList) {
+    NounProfileCluster(Noun noun, int clusterIndex,
+            ArrayList<VocabularyWord> wordList) {
+        this.noun = noun;
         this.clusterIndex = clusterIndex;
-        marks = new ArrayList<>();
-        VocabularySimpleComparator comp = new VocabularySimpleComparator();
-        unmentioned = new TreeSet<>(comp);
-        mentioned = new TreeSet<>(comp);
-        unmentioned.addAll(wordList);
+        this.wordList = wordList;
+        this.mentioned = new BitSet(wordList.size());
+        this.marks = new BitSet();
+        this.markCount = 0;
         isComplete = false;
     }
     
-    boolean isRelevantTo(VocabularyWord word) {
-        return unmentioned.contains(word) || mentioned.contains(word);
-    }
-    
     void markAsMentioned(VocabularyWord word, int streakIndex) {
-        if (unmentioned.contains(word)) {
-            unmentioned.remove(word);
-        }
-        if (!mentioned.contains(word)) {
-            mentioned.add(word);
+        for (int i = 0; i < wordList.size(); i++) {
+            if (wordList.get(i).str.equalsIgnoreCase(word.str)) {
+                mentioned.set(i);
+            }
         }
         setMarks(streakIndex, true);
     }
@@ -73,37 +74,42 @@ public class NounProfileCluster implements SyntaxObject {
     }
     
     private void setMarks(int streakIndex, boolean latest) {
-        for (int i = marks.size(); i <= streakIndex; i++) {
-            marks.add(false);
+        if (streakIndex >= markCount) {
+            markCount = streakIndex + 1;
         }
         marks.set(streakIndex, latest);
     }
     
     boolean hasClusterStreak() {
-        ListIterator<Boolean> iter = marks.listIterator();
-        
-        while (iter.hasNext()) {
-            if (iter.next() == false) {
-                return false;
-            }
+        // Every position was a hit if the popcount covers all of them
+        return marks.cardinality() == markCount;
+    }
+    
+    /**
+     * Adds the words describing this noun which have not been mentioned yet.
+     */
+    void addUnmentionedTo(Collection<VocabularyWord> buffer) {
+        for (int i = mentioned.nextClearBit(0);
+                i < wordList.size();
+                i = mentioned.nextClearBit(i + 1)) {
+            buffer.add(wordList.get(i));
         }
-        
-        return true;
     }
     
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
-        for (Boolean mark : marks) {
-            str.append(mark ? "X" : ".");
+        for (int i = 0; i < markCount; i++) {
+            str.append(marks.get(i) ? "X" : ".");
         }
         str.append(" | ");
-        Iterator<VocabularyWord> iter = mentioned.iterator();
-        while (iter.hasNext()) {
-            str.append(iter.next().toString());
-            if (iter.hasNext()) {
+        boolean isFirst = true;
+        for (int i = mentioned.nextSetBit(0); i >= 0; i = mentioned.nextSetBit(i + 1)) {
+            if (!isFirst) {
                 str.append(", ");
             }
+            str.append(wordList.get(i).toString());
+            isFirst = false;
         }
         
         return str.toString();
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+/**
+ * How a parse went, without throwing anything.
+ * 
+ * Most keystrokes leave the input in a state that doesn't make sense yet,
+ * like half of a noun, so failing is the normal case for the prompt, not an
+ * exceptional one. A failed parse comes back as a reason code, and where in
+ * the input the parser gave up, so that it costs the same as a parse that
+ * worked. Callers who'd rather have an exception can still call
+ * getOrThrow().
+ * 
+ * @author Joseph Cramsey
+ * @param <T> what a successful parse produces
+ */
+public final class ParseResult<T> {
+    
+    /**
+     * The position, when a failure can't be pinned to one spot in the input.
+     */
+    public static final int UNKNOWN_POSITION = -1;
+    
+    public enum Status {
+        OK,
+        // The input doesn't make sense, which is normal while typing
+        FAILED,
+        // Something about the world made the input impossible to read
+        FATAL
+    }
+    
+    public enum Reason {
+        NONE(Status.OK),
+        NO_VOCABULARY_MATCH(Status.FAILED),
+        PARTIAL_WORD(Status.FAILED),
+        INCORRECT_PART_OF_SPEECH(Status.FAILED),
+        NO_FULL_STREAK(Status.FAILED),
+        NO_VERB(Status.FAILED),
+        // A preposition was given, but nothing after it
+        MISSING_OBJECT(Status.FAILED),
+        AMBIGUOUS_PREPOSITION(Status.FATAL),
+        AMBIGUOUS_VERB(Status.FATAL);
+        
+        public final Status status;
+        
+        Reason(Status status) {
+            this.status = status;
+        }
+    }
+    
+    public final T value;
+    public final Reason reason;
+    // Character index into the input, or UNKNOWN_POSITION
+    public final int position;
+    // The offending text, if the reason needs one
+    public final String detail;
+    
+    private ParseResult(T value, Reason reason, int position, String detail) {
+        this.value = value;
+        this.reason = reason;
+        this.position = position;
+        this.detail = detail;
+    }
+    
+    static <T> ParseResult<T> ok(T value) {
+        return new ParseResult<>(value, Reason.NONE, UNKNOWN_POSITION, null);
+    }
+    
+    static <T> ParseResult<T> failed(Reason reason, int position, String detail) {
+        return new ParseResult<>(null, reason, position, detail);
+    }
+    
+    public Status getStatus() {
+        return reason.status;
+    }
+    
+    public boolean isOK() {
+        return reason == Reason.NONE;
+    }
+    
+    /**
+     * Hands this failure up to a caller whose input starts earlier.
+     * @param offset how far into the caller's input ours started
+     */
+    <U> ParseResult<U> asFailure(int offset) {
+        if (isOK()) {
+            throw new RuntimeException("Cannot pass along a successful parse as a failure!");
+        }
+        return new ParseResult<>(null, reason,
+                position == UNKNOWN_POSITION ? position : position + offset,
+                detail
+        );
+    }
+    
+    /**
+     * @return the same message the parser used to throw, or null if the
+     * parse worked
+     */
+    public String getMessage() {
+        switch (reason) {
+            case NO_VOCABULARY_MATCH:
+                return "No vocabulary match found";
+            case PARTIAL_WORD:
+                return "Failed to match whole word. Remainder: \"" + detail + "\"";
+            case INCORRECT_PART_OF_SPEECH:
+                return "Incorrect part of speech";
+            case NO_FULL_STREAK:
+                return "Failed to find noun with full streak";
+            case NO_VERB:
+                return "No verb was given";
+            case MISSING_OBJECT:
+                return "Expected something after \"" + detail + "\"";
+            case AMBIGUOUS_PREPOSITION:
+                return "We have multiple matches for preposition \"" + detail + "\"!";
+            case AMBIGUOUS_VERB:
+                return "We have multiple matches for verb \"" + detail + "\"!";
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * For callers who handle failures with exceptions.
+     * @throws ContextException if the input doesn't make sense yet
+     * @throws FatalContextException if the world itself is the problem
+     */
+    public T getOrThrow() throws ContextException, FatalContextException {
+        switch (reason.status) {
+            case FAILED:
+                throw new ContextException(getMessage());
+            case FATAL:
+                throw new FatalContextException(getMessage());
+            default:
+                return value;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        if (isOK()) return "OK: " + value;
+        return reason.status + " " + reason + " at " + position + ": " + getMessage();
+    }
+}
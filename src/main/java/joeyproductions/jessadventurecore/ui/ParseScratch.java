@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import joeyproductions.jessadventurecore.world.WorldVersion;
+
+/**
+ * The buffers a parse works in, kept around so the next parse on the same
+ * thread can reuse them instead of growing new ones.
+ * 
+ * Nothing in here is thread-safe. Each thread that parses should have its
+ * own scratch, like each worker in a batch parse, and the prompt's refresh.
+ * 
+ * @author Joseph Cramsey
+ */
+class ParseScratch {
+    
+    final ContextSequenceWeaver weaver;
+    final InputSanitizer sanitizer;
+    final Tokenizer tokenizer;
+    
+    // The vocabulary of the last version we parsed against
+    private VocabularyIndex index;
+    // Where each list of the reading being read starts in the input
+    private int[] listPositions;
+    
+    ParseScratch() {
+        this.index = null;
+        this.listPositions = new int[8];
+        this.weaver = new ContextSequenceWeaver();
+        this.sanitizer = new InputSanitizer();
+        this.tokenizer = new Tokenizer();
+    }
+    
+    /**
+     * @return the vocabulary index for this version, which is only rebuilt
+     * when the version is not the same one as last time
+     */
+    VocabularyIndex getIndex(WorldVersion world) {
+        if (index == null || index.world != world) {
+            index = new VocabularyIndex(world);
+        }
+        return index;
+    }
+    
+    /**
+     * @return a buffer with room for the positions of this many lists,
+     * which is only good until the next call
+     */
+    int[] getListPositions(int listCount) {
+        if (listPositions.length < listCount) {
+            listPositions = new int[Math.max(listCount, listPositions.length * 2)];
+        }
+        return listPositions;
+    }
+}
@@ -63,6 +63,7 @@ import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DocumentFilter;
 import joeyproductions.jessadventurecore.world.VocabularyWord;
+import joeyproductions.jessadventurecore.world.WorldVersion;
 
 /**
  * A UI component for typing out the prompt, and offering auto-complete.
@@ -77,9 +78,8 @@ class PlayerPrompt implements HabitualRefresher {
     final JPanel autocompleteSuggestionPanel;
     final JPanel buttonList;
     private final JPanel inputPanel;
-    private final JPanel suggestionList;
+    private final SuggestionListView suggestionList;
     private final JPanel suggestionCorePanel;
-    private final Component suggestionShifter;
     private final JLayeredPane layeredParent;
     private final ActionListener actionListener;
     private final StoryPanelBuffer storyPanelBuffer;
@@ -88,12 +88,22 @@ class PlayerPrompt implements HabitualRefresher {
     // Various stuff for thread-safe operation
     private String cachedInputString = "";
     private int cachedInputCaretPosition = 0;
-    private String headerString = "";
     private final int[] workingIndices = new int[] { 0, 0 };
     private int autocompleteLeftOffset;
     private boolean needsNewSuggestions = true;
     private boolean doSuggestions = false;
     private final ArrayList<SortableSuggestion> cachedSuggestions = new ArrayList<>();
+    final SuggestionCache suggestionCache =
+            new SuggestionCache(SuggestionCache.DEFAULT_CAPACITY);
+    private final SuggestionSpeculator speculator =
+            new SuggestionSpeculator(suggestionCache);
+    // Only the refresh thread parses with this, so a cache miss reuses its
+    // buffers and vocabulary index, instead of growing new ones
+    private final ParseScratch refreshScratch = new ParseScratch();
+    
+    // Only touched on the EDT
+    private final GlyphAdvanceCache inputAdvances = new GlyphAdvanceCache();
+    private final Rectangle dirtyRegion = new Rectangle();
     
     private class FocusPair {
         
@@ -136,16 +146,11 @@ class PlayerPrompt implements HabitualRefresher {
         });
         AbstractDocument doc = (AbstractDocument)textField.getDocument();
         doc.setDocumentFilter(new DocumentFilter() {
+            // Only used on the EDT, so the buffer can be shared
+            private final InputSanitizer sanitizer = new InputSanitizer();
+            
             private String getFilteredString(String string) {
-                String buffer = "";
-                for (int i = 0; i < string.length(); i++) {
-                    char c = string.charAt(i);
-                    if (JessAdventureCore.isValidInputCharacter(c)) {
-                        buffer += c;
-                    }
-                }
-                
-                return buffer;
+                return sanitizer.filter(string);
             }
             
             @Override
@@ -173,6 +178,9 @@ class PlayerPrompt implements HabitualRefresher {
             }
         });
         
+        // Pressing Enter submits the input
+        textField.addActionListener(this.actionListener);
+        
         //TODO: Make autocomplete optional: Off, No popup, With popup
         
         textField.addCaretListener((CaretEvent e) -> {
@@ -272,11 +280,13 @@ class PlayerPrompt implements HabitualRefresher {
         suggestionCorePanel.add(Box.createVerticalStrut(helpSeparation));
         
         JPanel suggestionListResizer = new JPanel(new BorderLayout());
-        suggestionList = new JPanel(new GridLayout(0, 1));
+        suggestionList = new SuggestionListView(JessAdventureCore.MAX_SUGGESTION_COUNT);
         suggestionListResizer.add(suggestionList, BorderLayout.PAGE_START);
         suggestionCorePanel.add(suggestionListResizer);
         
-        autocompleteSuggestionPanel = new JPanel() {
+        // The popup is placed by hand, so moving it along with the caret
+        // does not need a layout manager.
+        autocompleteSuggestionPanel = new JPanel(null) {
             @Override
             public Rectangle getBounds(Rectangle temp) {
                 temp.x = 0;
@@ -290,39 +300,25 @@ class PlayerPrompt implements HabitualRefresher {
             public Rectangle getBounds() {
                 return getBounds(new Rectangle());
             }
-        };
-        autocompleteSuggestionPanel.setOpaque(false);
-        autocompleteSuggestionPanel.setLayout(new BoxLayout(autocompleteSuggestionPanel, BoxLayout.X_AXIS));
-        suggestionShifter = new Component() {
-            @Override
-            public Dimension getPreferredSize() {
-                int maxWidth = layeredParent.getWidth();
-                int suggestionWidth = suggestionCorePanel.getPreferredSize().width;
-                int maxOffset = maxWidth - suggestionWidth;
-                int actualOffset = Math.min(maxOffset, autocompleteLeftOffset);
-                return new Dimension(actualOffset, layeredParent.getHeight());
-            }
-            
-            @Override
-            public Dimension getMinimumSize() {
-                return getPreferredSize();
-            }
             
             @Override
-            public Dimension getMaximumSize() {
-                return getPreferredSize();
+            public void doLayout() {
+                placeSuggestions();
             }
         };
-        autocompleteSuggestionPanel.add(suggestionShifter);
-        
-        JPanel suggestionAlignerY = new JPanel();
-        suggestionAlignerY.setOpaque(false);
-        suggestionAlignerY.setLayout(new BoxLayout(suggestionAlignerY, BoxLayout.Y_AXIS));
-        suggestionAlignerY.add(Box.createVerticalGlue());
-        suggestionAlignerY.add(suggestionCorePanel);
-        
-        autocompleteSuggestionPanel.add(suggestionAlignerY);
-        autocompleteSuggestionPanel.add(Box.createHorizontalGlue());
+        autocompleteSuggestionPanel.setOpaque(false);
+        autocompleteSuggestionPanel.add(suggestionCorePanel);
+    }
+    
+    private void placeSuggestions() {
+        // Sits on the bottom of the layered pane, under the working word,
+        // without running off the right edge.
+        Dimension size = suggestionCorePanel.getPreferredSize();
+        int maxOffset = layeredParent.getWidth() - size.width;
+        int x = Math.max(0, Math.min(maxOffset, autocompleteLeftOffset));
+        int y = layeredParent.getHeight() - size.height;
+        suggestionCorePanel.setBounds(x, y, size.width, size.height);
+        suggestionCorePanel.validate();
     }
     
     void rearrange() {
@@ -378,6 +374,9 @@ class PlayerPrompt implements HabitualRefresher {
     }
     
     private void prepareForSuggestions() {
+        // Whatever was being guessed at is about to be out of date
+        speculator.cancel();
+        
         RefreshThread.startPause(this);
         
         cachedInputString = textField.getText();
@@ -403,72 +402,151 @@ class PlayerPrompt implements HabitualRefresher {
         StringCaretPair sterileInput =
                 new StringCaretPair(cachedInputString, cachedInputCaretPosition);
         getWorkingIndices(sterileInput, workingIndices);
-        String workingWord = getWorkingWord();
+        String workingWord = getWorkingWord(
+                sterileInput.str, sterileInput.caretPosition, workingIndices
+        );
         doSuggestions = !(workingWord.equals(""));
         
         if (doSuggestions) {
-            headerString = cachedInputString.substring(0, workingIndices[0]);
+            // Pin the version first, so the cache key matches what we parse
+            WorldVersion world = JessAdventureCore.CORE.world.pin();
+            SuggestionCache.Key key = new SuggestionCache.Key(world.number,
+                    PromptContext.getRelevantPart(sterileInput.str, workingIndices),
+                    workingWord
+            );
             
-            try {
-                PromptContext contextObject = PromptContext
-                        .createContext(sterileInput.str, workingIndices);
-
-                System.out.println(contextObject.toString());
-                
-                // Only make suggestions if we understand the input so far
-                if (workingWord.equals(" ")) {
-                    getSuggestionsFromContext(contextObject);
-                }
-                else {
-                    getSuggestionsFromContextAndInput(contextObject, workingWord);
-                }
-
-                Collections.sort(cachedSuggestions, (x, y)
-                        -> Float.compare(x.score, y.score));
-                while (cachedSuggestions.size() > JessAdventureCore.MAX_SUGGESTION_COUNT) {
-                    cachedSuggestions.remove(0);
+            SortableSuggestion[] suggestions = suggestionCache.get(key);
+            if (suggestions == null) {
+                suggestions = findSuggestions(world, sterileInput.str,
+                        workingIndices, workingWord, refreshScratch,
+                        cachedSuggestions, true
+                );
+                if (suggestions != null) {
+                    suggestionCache.put(key, suggestions);
                 }
-
-                doSuggestions = cachedSuggestions.size() > 0;
-            } catch (ContextException ex) {
-                // This is actually fine; we just won't handle suggestions
-                doSuggestions = false;
-            } catch (FatalContextException ex) {
-                doSuggestions = false;
-                ex.printStackTrace(System.err);
             }
+            
+            if (suggestions != null) {
+                Collections.addAll(cachedSuggestions, suggestions);
+            }
+            doSuggestions = cachedSuggestions.size() > 0;
+            
+            // While the player reads these, guess at what comes next
+            if (doSuggestions) {
+                speculator.speculate(world, sterileInput.str, workingIndices,
+                        workingWord, suggestions
+                );
+            }
+        }
+        
+        // Hand the EDT a snapshot, because we may be refreshing again
+        // before it gets to this.
+        String[] suggestionStrings = new String[cachedSuggestions.size()];
+        for (int i = 0; i < suggestionStrings.length; i++) {
+            suggestionStrings[i] = cachedSuggestions.get(i).toString();
         }
+        String inputSnapshot = cachedInputString;
+        int headerEnd = workingIndices[0];
         
         SwingUtilities.invokeLater(() -> {
-            suggestionList.removeAll();
+            suggestionCorePanel.getBounds(dirtyRegion);
             
-            for (SortableSuggestion suggestion : cachedSuggestions) {
-                suggestionList.add(new JLabel(suggestion.toString()));
+            boolean resized = suggestionList.setSuggestions(
+                    suggestionStrings, suggestionStrings.length
+            );
+            if (resized) {
+                suggestionCorePanel.invalidate();
             }
             
             FontMetrics metrics = textField.getFontMetrics(textField.getFont());
-            int offsetWithinBox = metrics.stringWidth(headerString);
+            int offsetWithinBox = inputAdvances.getAdvance(metrics, inputSnapshot, headerEnd);
             int offsetWithinPanel = textField.getLocation().x;
             autocompleteLeftOffset = offsetWithinBox + offsetWithinPanel;
             
-            autocompleteSuggestionPanel.invalidate();
-            autocompleteSuggestionPanel.validate();
-            autocompleteSuggestionPanel.repaint();
+            placeSuggestions();
+            
+            // Only repaint where the popup was, and where it is now
+            if (dirtyRegion.isEmpty()) {
+                suggestionCorePanel.getBounds(dirtyRegion);
+            }
+            else {
+                SwingUtilities.computeUnion(
+                        suggestionCorePanel.getX(), suggestionCorePanel.getY(),
+                        suggestionCorePanel.getWidth(), suggestionCorePanel.getHeight(),
+                        dirtyRegion
+                );
+            }
+            autocompleteSuggestionPanel.repaint(dirtyRegion);
         });
     }
     
-    private void getSuggestionsFromContext(PromptContext contextObject) {
+    /**
+     * Parses the input and scores the suggestions for it. This only touches
+     * what it's handed, so the speculator can run it on its own thread.
+     * @param work an empty list to score in, which is left empty
+     * @param printContext whether to dump the parsed context to stdout
+     * @return the best suggestions, in display order, or null if something
+     * went wrong that shouldn't be remembered
+     */
+    static SortableSuggestion[] findSuggestions(WorldVersion world,
+            String sterileInput, int[] workingIndices, String workingWord,
+            ParseScratch scratch, ArrayList<SortableSuggestion> work,
+            boolean printContext) {
+        ParseResult<PromptContext> parsed = PromptContext.parseContext(
+                world, sterileInput, workingIndices, scratch
+        );
+        
+        switch (parsed.getStatus()) {
+            case FAILED:
+                // This is actually fine; we just won't handle suggestions
+                work.clear();
+                break;
+            case FATAL:
+                work.clear();
+                System.err.println(parsed);
+                return null;
+            default:
+                PromptContext contextObject = parsed.value;
+                
+                if (printContext) {
+                    System.out.println(contextObject.toString());
+                }
+                
+                // Only make suggestions if we understand the input so far
+                if (workingWord.equals(" ")) {
+                    getSuggestionsFromContext(contextObject, work);
+                }
+                else {
+                    getSuggestionsFromContextAndInput(contextObject, workingWord, work);
+                }
+                
+                Collections.sort(work, (x, y)
+                        -> Float.compare(x.score, y.score));
+                while (work.size() > JessAdventureCore.MAX_SUGGESTION_COUNT) {
+                    work.remove(0);
+                }
+        }
+        
+        SortableSuggestion[] suggestions =
+                work.toArray(new SortableSuggestion[work.size()]);
+        work.clear();
+        return suggestions;
+    }
+    
+    private static void getSuggestionsFromContext(PromptContext contextObject,
+            ArrayList<SortableSuggestion> work) {
         int count = 0;
         for (VocabularyWord suggestion : contextObject.suggestions) {
             float matchingFactor = 1; //TODO: Suggestion matching strings can have individual biases
             float bias = matchingFactor + ((float)count / 1000f);
-            cachedSuggestions.add(new SortableSuggestion(suggestion, bias));
+            work.add(new SortableSuggestion(suggestion, bias));
             count++;
         }
     }
     
-    private void getSuggestionsFromContextAndInput
-        (PromptContext contextObject, String workingInput) {
+    private static void getSuggestionsFromContextAndInput
+        (PromptContext contextObject, String workingInput,
+                ArrayList<SortableSuggestion> work) {
             
         String caselessInput = workingInput.toLowerCase();
             
@@ -516,7 +594,7 @@ class PlayerPrompt implements HabitualRefresher {
 
             if (bestScore > Float.MIN_NORMAL * 2) {
                 // Do not accept irrelevant suggestions
-                cachedSuggestions.add(
+                work.add(
                         new SortableSuggestion(suggestion, bestScore)
                 );
             }
@@ -562,7 +640,7 @@ class PlayerPrompt implements HabitualRefresher {
         return new StringCaretPair(buffer, caretPosition);
     }*/
     
-    private static void getWorkingIndices(StringCaretPair sterileInput, int[] buffer) {
+    static void getWorkingIndices(StringCaretPair sterileInput, int[] buffer) {
         if (buffer == null) {
             throw new RuntimeException("Index buffer is null!");
         }
@@ -611,8 +689,8 @@ class PlayerPrompt implements HabitualRefresher {
         buffer[1] = lastIndex;
     }
     
-    private String getWorkingWord() {
-        String str = cachedInputString;
+    static String getWorkingWord(String str, int caretPosition,
+            int[] workingIndices) {
         
         if (str.isBlank()) {
             return ""; // Indicates no input
@@ -620,7 +698,7 @@ class PlayerPrompt implements HabitualRefresher {
         
         // Any cases after this will probably have a word...
         
-        if (str.endsWith(" ") && cachedInputCaretPosition == str.length()) {
+        if (str.endsWith(" ") && caretPosition == str.length()) {
             return " "; // Indicates a new word, not yet entered
         }
         
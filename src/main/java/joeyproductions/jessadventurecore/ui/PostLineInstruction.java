@@ -28,18 +28,25 @@ package joeyproductions.jessadventurecore.ui;
  * 
  * @author Joseph Cramsey
  */
-class PostLineInstruction implements StoryPanelInstruction {
+public final class PostLineInstruction implements StoryPanelInstruction {
     
-    static final int METHOD_APPEND = 0;
-    static final int METHOD_APPEND_DIRECTLY = 1;
-    static final int METHOD_APPEND_PARAGRAPH = 2;
-    static final int METHOD_APPEND_OTHER = 3;
+    final String content;
+    final InstructionKind method;
     
-    String content;
-    int method;
-    
-    PostLineInstruction(String content, int method) {
+    PostLineInstruction(String content, InstructionKind method) {
+        if (!method.isPost()) {
+            throw new RuntimeException("Unrecognized post line method: " + method);
+        }
         this.content = content;
         this.method = method;
     }
+    
+    public String getContent() {
+        return content;
+    }
+    
+    @Override
+    public InstructionKind getKind() {
+        return method;
+    }
 }
@@ -28,7 +28,10 @@ package joeyproductions.jessadventurecore.ui;
  * 
  * @author Joseph Cramsey
  */
-public class PressToContinueInstruction implements StoryPanelInstruction {
+public final class PressToContinueInstruction implements StoryPanelInstruction {
     
-    //
+    @Override
+    public InstructionKind getKind() {
+        return InstructionKind.PRESS_TO_CONTINUE;
+    }
 }
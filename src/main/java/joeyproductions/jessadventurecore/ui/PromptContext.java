@@ -24,14 +24,22 @@
 package joeyproductions.jessadventurecore.ui;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 import java.util.TreeSet;
 import joeyproductions.jessadventurecore.world.SyntaxObject;
+import joeyproductions.jessadventurecore.world.Noun;
+import joeyproductions.jessadventurecore.world.ResolvedCommand;
 import joeyproductions.jessadventurecore.world.Verb;
+import joeyproductions.jessadventurecore.world.VerbFrame;
+import joeyproductions.jessadventurecore.world.VerbLexicon;
 import joeyproductions.jessadventurecore.world.VocabularySuggestionComparator;
 import joeyproductions.jessadventurecore.world.VocabularyWord;
-import joeyproductions.jessadventurecore.world.World;
+import joeyproductions.jessadventurecore.world.WorldVersion;
 
 /**
  * An object storing the context of the player's input so far.
@@ -39,7 +47,14 @@ import joeyproductions.jessadventurecore.world.World;
  */
 class PromptContext extends ListSequence<SyntaxObject> {
     
+    // How many readings of one input to try, before giving up on it
+    private static final int MAX_READINGS = 8;
+    
     public VocabularyWord[] suggestions;
+    // The world version this context was parsed against
+    long worldVersion;
+    // Where the verb frame's automaton ended up, after the whole input
+    int frameState = VerbFrame.AFTER_VERB;
     
     //private final ArrayList<ArrayList<SyntaxObject>> syntaxSequence;
     
@@ -115,91 +130,282 @@ class PromptContext extends ListSequence<SyntaxObject> {
         return createContext(sterileInput, new int[] { len, len });
     }
     
+    /**
+     * Parses a whole submitted input into a command for the game logic.
+     */
+    static ResolvedCommand resolveCommand
+        (String sterileInput) throws ContextException, FatalContextException {
+            
+        return resolveCommand(JessAdventureCore.CORE.world.pin(),
+                sterileInput, new ParseScratch());
+    }
+    
+    /**
+     * Parses a whole input against a version that the caller pinned, using
+     * the caller's own scratch. This does not touch the adventure core, so
+     * many threads can do this at once, as long as each has its own scratch.
+     */
+    static ResolvedCommand resolveCommand(WorldVersion world,
+            String sterileInput, ParseScratch scratch)
+                throws ContextException, FatalContextException {
+            
+        return parseCommand(world, sterileInput, scratch).getOrThrow();
+    }
+    
+    /**
+     * Like resolveCommand(), but a failure comes back as the result,
+     * instead of being thrown.
+     */
+    static ParseResult<ResolvedCommand> parseCommand(WorldVersion world,
+            String sterileInput, ParseScratch scratch) {
+            
+        int len = sterileInput.length();
+        ParseResult<PromptContext> parsed = parseContext(world, sterileInput,
+                new int[] { len, len }, scratch);
+        if (!parsed.isOK()) {
+            return parsed.asFailure(0);
+        }
+        PromptContext context = parsed.value;
+        if (context.size() < 1 || context.isLastListEmpty()) {
+            return ParseResult.failed(ParseResult.Reason.NO_VERB, 0, null);
+        }
+        
+        // "put candy in" reads fine as far as it goes, but the preposition
+        // is still waiting for its object, so it isn't a whole command yet.
+        boolean missingObject = context.frameState == VerbFrame.AFTER_PREPOSITION;
+        
+        // The first list holds the verb, and the lists after that hold
+        // noun phrases, with maybe a preposition somewhere in between.
+        Verb verb = null;
+        String preposition = null;
+        ArrayList<List<Noun>> directObjects = new ArrayList<>();
+        ArrayList<List<Noun>> indirectObjects = new ArrayList<>();
+        
+        SequenceIterator<SyntaxObject> synIter = context.sequenceIterator();
+        while (synIter.hasNext()) {
+            synIter.next();
+            ArrayList<Noun> phrase = new ArrayList<>();
+            boolean inVerbList = false;
+            while (synIter.hasNext()) {
+                SyntaxObject synObj = synIter.next();
+                if (synObj instanceof NounProfileCluster) {
+                    phrase.add(((NounProfileCluster)synObj).noun);
+                }
+                else if (verb == null || inVerbList) {
+                    // Every verb left here fits the input, so if there's
+                    // more than one, we can't pick between them without
+                    // the vocabulary order deciding for us.
+                    Verb listVerb = (Verb)((VocabularyWord)synObj).referable;
+                    if (verb != null && verb != listVerb) {
+                        return ParseResult.failed(
+                                ParseResult.Reason.AMBIGUOUS_VERB,
+                                countLeadingSpaces(sterileInput),
+                                ((VocabularyWord)synObj).str
+                        );
+                    }
+                    verb = listVerb;
+                    inVerbList = true;
+                }
+                else if (!inVerbList) {
+                    preposition = ((VocabularyWord)synObj).str;
+                }
+            }
+            
+            if (!phrase.isEmpty()) {
+                if (preposition == null) {
+                    directObjects.add(phrase);
+                }
+                else {
+                    indirectObjects.add(phrase);
+                }
+            }
+        }
+        
+        if (missingObject) {
+            return ParseResult.failed(ParseResult.Reason.MISSING_OBJECT,
+                    sterileInput.length(), preposition);
+        }
+        
+        return ParseResult.ok(new ResolvedCommand(sterileInput, verb,
+                directObjects, preposition, indirectObjects,
+                context.worldVersion));
+    }
+    
     static PromptContext createContext
         (String sterileInput, int[] workingIndices)
                 throws ContextException, FatalContextException {
             
-        World world = JessAdventureCore.CORE.world;
+        // Pin one version of the world for the whole parse, so the game
+        // logic can keep changing it without us seeing half of a change.
+        return createContext(JessAdventureCore.CORE.world.pin(),
+                sterileInput, workingIndices, new ParseScratch());
+    }
+    
+    /**
+     * @return the part of the input that a context is actually built from,
+     * so two inputs with the same relevant part get the same context
+     */
+    static String getRelevantPart(String sterileInput, int[] workingIndices) {
+        if (workingIndices[0] == workingIndices[1] && workingIndices[0] == sterileInput.length()) {
+            // Both working indices at the end of the string indicate that
+            // we are evaluating the entire string.
+            return sterileInput.trim();
+        }
+        
+        // We are not wasting our computation time wondering what the player
+        // was currently typing. We are only concerned with the fully-
+        // complete words already typed, or halting when the input so far
+        // makes no sense.
+        // For this reason, we are cleaving off the word which contains the
+        // player's input caret.
+        return sterileInput.substring(0, workingIndices[0]).trim();
+    }
+    
+    static PromptContext createContext(WorldVersion world,
+            String sterileInput, int[] workingIndices, ParseScratch scratch)
+                throws ContextException, FatalContextException {
+            
+        return parseContext(world, sterileInput, workingIndices, scratch)
+                .getOrThrow();
+    }
+    
+    /**
+     * Builds the context for an input, against a version that the caller
+     * pinned, using the caller's own scratch. An input that doesn't make
+     * sense comes back as a failed result, which is just as cheap as one
+     * that does.
+     */
+    static ParseResult<PromptContext> parseContext(WorldVersion world,
+            String sterileInput, int[] workingIndices, ParseScratch scratch) {
+            
         PromptContext context = new PromptContext();
+        context.worldVersion = world.number;
         
         // If the low working index is zero, then the player has not finished
         // typing in the first word, so we can just recommend verbs for auto-
         // completion suggestions.
         
+        VerbLexicon lexicon = world.getVerbLexicon();
         if (workingIndices[0] == 0) {
-            ArrayList<VocabularyWord> verbSuggestions = new ArrayList<>();
-            ListIterator<Verb> iter = world.verbs.listIterator();
-            while (iter.hasNext()) {
-                verbSuggestions.addAll(iter.next().gatherVocabulary());
-            }
+            List<VocabularyWord> verbSuggestions = lexicon.getPhraseSuggestions();
             context.suggestions =
                     verbSuggestions.toArray(new VocabularyWord[verbSuggestions.size()]);
-            return context;
+            return ParseResult.ok(context);
         }
         
         
-        String relevantPart;
+        String relevantPart = getRelevantPart(sterileInput, workingIndices);
         
-        if (workingIndices[0] == workingIndices[1] && workingIndices[0] == sterileInput.length()) {
-            // Both working indices at the end of the string indicate that
-            // we are evaluating the entire string.
-            relevantPart = sterileInput.trim();
-        }
-        else {
-            // We are not wasting our computation time wondering what the player
-            // was currently typing. We are only concerned with the fully-
-            // complete words already typed, or halting when the input so far
-            // makes no sense.
-            // For this reason, we are cleaving off the word which contains the
-            // player's input caret.
-            relevantPart = sterileInput.substring(0, workingIndices[0]).trim();
+        //System.out.println("Relevant part: |" + relevantPart + "|");
+        
+        VocabularyIndex index = scratch.getIndex(world);
+        ParseResult<List<ListSequence<VocabularyWord>>> built =
+                ContextVocabBuilder.buildVocabSequences(
+                        relevantPart, scratch.tokenizer, index, lexicon,
+                        MAX_READINGS
+                );
+        // The relevant part was trimmed, so positions in it are shifted
+        int relevantOffset = countLeadingSpaces(sterileInput);
+        if (!built.isOK()) {
+            return built.asFailure(relevantOffset);
         }
         
-        //System.out.println("Relevant part: |" + relevantPart + "|");
+        // A reading can make sense word by word, and still not fit the
+        // verb's frame, or leave no noun with a full streak. Then a less
+        // greedy reading might work, so try them in order. If none do, the
+        // best reading's failure is the one worth telling the player about.
+        ParseResult<PromptContext> firstFailure = null;
+        for (ListSequence<VocabularyWord> reading : built.value) {
+            ParseResult<PromptContext> read = readContext(
+                    world, reading, index.vocab, relevantOffset, scratch
+            );
+            if (read.isOK()) {
+                return read;
+            }
+            if (firstFailure == null) {
+                firstFailure = read;
+            }
+        }
+        return firstFailure;
+    }
+    
+    /**
+     * Builds the context from one reading of the input.
+     */
+    private static ParseResult<PromptContext> readContext(WorldVersion world,
+            ListSequence<VocabularyWord> referenceSequence,
+            TreeSet<VocabularyWord> vocab, int relevantOffset,
+            ParseScratch scratch) {
         
-        TreeSet<VocabularyWord> vocab = new TreeSet<>();
-        world.loadRelevantVocabulary(vocab);
-        ListSequence<VocabularyWord> referenceSequence =
-                ContextVocabBuilder.buildVocabSequence(relevantPart, vocab);
+        PromptContext context = new PromptContext();
+        context.worldVersion = world.number;
+        VerbLexicon lexicon = world.getVerbLexicon();
         
-        // Make sure our first word is a verb, and following words are not
+        // Make sure our first word is a verb, and following words are not,
+        // unless they are prepositions that the verb's frame accepts.
         SequenceIterator<VocabularyWord> refSeqIter = referenceSequence.sequenceIterator();
         boolean requiringVerb = true;
+        ArrayList<VocabularyWord> verbWords = null;
+        Set<Verb> matchedVerbs = Collections.newSetFromMap(new IdentityHashMap<>());
+        int frameState = VerbFrame.AFTER_VERB;
+        // The token each list starts on, and where that is in the input, for
+        // saying where the input went wrong
+        int listToken = 0;
+        int listIndex = 0;
+        int[] listPositions = scratch.getListPositions(referenceSequence.size());
         
         while (refSeqIter.hasNext()) {
             refSeqIter.next();
-
-            while (refSeqIter.hasNext()) {
-                VocabularyWord listItem = refSeqIter.next();
-                if ((listItem.referable instanceof Verb) != requiringVerb) {
-                    // Remove a possible reference if it does not meet the
-                    // part-of-speech requirement.
-                    refSeqIter.remove();
+            int listTokenCount = countTokens(refSeqIter.peekList().get(0).str);
+            listPositions[listIndex] = relevantOffset
+                    + scratch.tokenizer.getStart(listToken);
+            
+            if (requiringVerb) {
+                while (refSeqIter.hasNext()) {
+                    VocabularyWord listItem = refSeqIter.next();
+                    // Prepositions belong to verbs too, but can't start one
+                    if (!lexicon.isPhrase(listItem)) {
+                        refSeqIter.remove();
+                    }
+                    else {
+                        matchedVerbs.add((Verb)listItem.referable);
+                    }
                 }
+                verbWords = refSeqIter.peekList();
             }
-
+            else {
+                frameState = filterObjectPosition(
+                        refSeqIter, matchedVerbs, verbWords, frameState
+                );
+            }
+            
             // If the resulting list in the sequence is empty, then the
             // player did not start their input with the correct pare of speech,
             // and makes no sense as an input.
             if (refSeqIter.peekList().isEmpty()) {
-                throw new ContextException("Incorrect part of speech");
+                return ParseResult.failed(
+                        ParseResult.Reason.INCORRECT_PART_OF_SPEECH,
+                        listPositions[listIndex], null
+                );
             }
             
             // Only the first word in the input is a verb
             requiringVerb = false;
+            listToken += listTokenCount;
+            listIndex++;
         }
         
-        // IF WE HAVE MADE IT THIS FAR, then we can confirm that we have matched
-        // a verb AT THE LEAST. So, at this point, we should identify the
-        // prepositions being used, and then narrow down the verb from there.
-        
-        //TODO: Implement proper prepositions
-        
         // TODO: Handle nouns that have a preposition in their adjectives
         //       "Angel with large wings"
         // For now, we are assuming no nouns are described with prepositions
         
-        ContextSequenceWeaver.weave(context, referenceSequence);
+        ParseResult<PromptContext> woven = scratch.weaver.weave(
+                context, referenceSequence, world.getDescriptorIndex(),
+                listPositions
+        );
+        if (!woven.isOK()) {
+            return woven;
+        }
         
         // Now that the nouns are collected into clusters, we can clear out
         // the ones that have broken streaks, as the player probably was not
@@ -210,6 +416,7 @@ class PromptContext extends ListSequence<SyntaxObject> {
         }
         
         SequenceIterator<SyntaxObject> synIter = context.sequenceIterator();
+        int contextListIndex = 0;
         while (synIter.hasNext()) {
             synIter.next();
             while (synIter.hasNext()) {
@@ -225,11 +432,13 @@ class PromptContext extends ListSequence<SyntaxObject> {
             if (synIter.peekList().isEmpty()) {
                 // We couldn't find a noun that is being consistently
                 // referred to, so the input doesn't make sense.
-                throw new ContextException("Failed to find noun with full streak");
+                return ParseResult.failed(ParseResult.Reason.NO_FULL_STREAK,
+                        scratch.weaver.getListPosition(contextListIndex), null);
             }
+            contextListIndex++;
         }
         
-        // Gather noun starters
+        // Gather noun starters, and the prepositions that could come next
         TreeSet<NounProfile> vocabNouns = new TreeSet<>();
         ArrayList<VocabularyWord> nounStarters = new ArrayList<>();
         Iterator<VocabularyWord> vocabIter = vocab.iterator();
@@ -241,6 +450,11 @@ class PromptContext extends ListSequence<SyntaxObject> {
                     vocabNouns.add(word.nounProfile);
                 }
             }
+            else if (frameState == VerbFrame.IN_DIRECT_OBJECT
+                    && matchedVerbs.contains(word.referable)
+                    && ((Verb)word.referable).getFrame().acceptsPreposition(word.str)) {
+                nounStarters.add(word);
+            }
         }
         
         // Using the sequence, fill out the best suggestions.
@@ -257,7 +471,7 @@ class PromptContext extends ListSequence<SyntaxObject> {
             if (synObj instanceof NounProfileCluster) {
                 NounProfileCluster cluster = (NounProfileCluster)synObj;
                 if (!cluster.isComplete) {
-                    suggestions.addAll(cluster.unmentioned);
+                    cluster.addUnmentionedTo(suggestions);
                     continue;
                 }
             }
@@ -267,7 +481,79 @@ class PromptContext extends ListSequence<SyntaxObject> {
         }
         
         context.suggestions = suggestions.toArray(new VocabularyWord[suggestions.size()]);
+        context.frameState = frameState;
+        
+        return ParseResult.ok(context);
+    }
+    
+    private static int countLeadingSpaces(String str) {
+        int count = 0;
+        while (count < str.length() && str.charAt(count) == ' ') count++;
+        return count;
+    }
+    
+    /**
+     * Vocabulary never has leading or repeated spaces, so every space starts
+     * another token.
+     */
+    private static int countTokens(String spelling) {
+        int count = 1;
+        for (int i = 0; i < spelling.length(); i++) {
+            if (spelling.charAt(i) == ' ') count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Keeps the nouns at a position after the verb, along with at most one
+     * preposition, if the matched verbs' frames accept it here. When a
+     * preposition is found, verbs that don't accept it are dropped.
+     * @return the frame state after this position
+     */
+    private static int filterObjectPosition(
+            SequenceIterator<VocabularyWord> refSeqIter,
+            Set<Verb> matchedVerbs, ArrayList<VocabularyWord> verbWords,
+            int frameState) {
+        boolean hasNoun = false;
+        VocabularyWord preposition = null;
+        int prepositionState = VerbFrame.REJECT;
+        
+        while (refSeqIter.hasNext()) {
+            VocabularyWord listItem = refSeqIter.next();
+            if (!(listItem.referable instanceof Verb)) {
+                hasNoun = true;
+                continue;
+            }
+            
+            Verb verb = (Verb)listItem.referable;
+            int nextState = matchedVerbs.contains(verb)
+                    ? verb.getFrame().advance(frameState, listItem.str)
+                    : VerbFrame.REJECT;
+            
+            if (nextState == VerbFrame.REJECT || preposition != null) {
+                // Either it's not for our verb, or another matched verb
+                // already gave us this same preposition.
+                refSeqIter.remove();
+            }
+            else {
+                preposition = listItem;
+                prepositionState = nextState;
+            }
+        }
+        
+        if (preposition == null) {
+            // Every verb frame agrees on where nouns go
+            return hasNoun ? matchedVerbs.iterator().next().getFrame()
+                    .advance(frameState, null) : frameState;
+        }
+        
+        // Now we know which verbs the player could mean
+        String prepositionStr = preposition.str;
+        matchedVerbs.removeIf(
+                verb -> !verb.getFrame().acceptsPreposition(prepositionStr)
+        );
+        verbWords.removeIf(word -> !matchedVerbs.contains((Verb)word.referable));
         
-        return context;
+        return prepositionState;
     }
 }
@@ -25,7 +25,8 @@ package joeyproductions.jessadventurecore.ui;
 
 import java.awt.Dimension;
 import java.awt.Rectangle;
-import java.awt.Toolkit;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.ListIterator;
 import javax.swing.Box;
@@ -35,6 +36,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextPane;
 import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.html.HTMLDocument;
 import javax.swing.text.html.HTMLEditorKit;
 import javax.swing.text.html.StyleSheet;
@@ -43,7 +45,7 @@ import javax.swing.text.html.StyleSheet;
  * A panel for displaying the story output of the game.
  * @author Joseph Cramsey
  */
-class StoryPanel extends JTextPane implements HabitualRefresher {
+class StoryPanel extends JTextPane implements HabitualRefresher, StorySink {
     
     private static final String INDENT = "&nbsp;&nbsp;&nbsp;";
     
@@ -53,17 +55,20 @@ class StoryPanel extends JTextPane implements HabitualRefresher {
     boolean somethingWasPosted = false;
     
     private final JLayeredPane layeredParent;
+    private final LayoutMetrics layoutMetrics;
     
-    private StoryPanel(String firstMessage, JLayeredPane layeredParent) {
+    private StoryPanel(String firstMessage, JLayeredPane layeredParent, LayoutMetrics layoutMetrics) {
         super();
         this.layeredParent = layeredParent;
+        this.layoutMetrics = layoutMetrics;
         htmlEditorKit = new HTMLEditorKit();
         lines = new ArrayList<>();
         lines.add(new LineContent(firstMessage, false));
     }
     
-    static ScrollPair<StoryPanel> createStoryPanel(String firstMessage, JLayeredPane layeredParent) {
-        StoryPanel storyPanel = new StoryPanel(firstMessage, layeredParent);
+    static ScrollPair<StoryPanel> createStoryPanel(String firstMessage,
+            JLayeredPane layeredParent, LayoutMetrics layoutMetrics) {
+        StoryPanel storyPanel = new StoryPanel(firstMessage, layeredParent, layoutMetrics);
         storyPanel.setEditable(false);
         storyPanel.setContentType("text/html");
         storyPanel.setOpaque(true);
@@ -182,7 +187,39 @@ class StoryPanel extends JTextPane implements HabitualRefresher {
         
         sb.append("</body></html>");
         
-        setText(sb.toString());
+        // Parsing the HTML into an element tree is the expensive part, so we
+        // do it here, on whatever thread is refreshing us, into a document
+        // that nothing is displaying yet. The EDT only has to swap it in.
+        HTMLDocument preRendered = preRender(sb.toString());
+        if (preRendered == null) return;
+        
+        if (SwingUtilities.isEventDispatchThread()) {
+            spliceDocument(preRendered);
+        }
+        else {
+            SwingUtilities.invokeLater(() -> {
+                spliceDocument(preRendered);
+            });
+        }
+    }
+    
+    private HTMLDocument preRender(String html) {
+        HTMLDocument document = (HTMLDocument)htmlEditorKit.createDefaultDocument();
+        
+        try {
+            htmlEditorKit.read(new StringReader(html), document, 0);
+        } catch (IOException | BadLocationException ex) {
+            // The story content did not validate, so keep showing whatever
+            // we had before, instead of a half-built document.
+            ex.printStackTrace(System.err);
+            return null;
+        }
+        
+        return document;
+    }
+    
+    private void spliceDocument(HTMLDocument preRendered) {
+        setDocument(preRendered);
         somethingWasPosted = true;
     }
     
@@ -221,7 +258,8 @@ class StoryPanel extends JTextPane implements HabitualRefresher {
         RefreshThread.endPause(this);
     }
     
-    void append(String content) {
+    @Override
+    public void append(String content) {
         if (content.isBlank()) return; // Do not indirectly append blank content
         
         startPause();
@@ -231,7 +269,8 @@ class StoryPanel extends JTextPane implements HabitualRefresher {
         endPause();
     }
     
-    void appendDirectly(String content) {
+    @Override
+    public void appendDirectly(String content) {
         if (content.isEmpty()) return; // Do not append empty content
         
         startPause();
@@ -241,7 +280,8 @@ class StoryPanel extends JTextPane implements HabitualRefresher {
         endPause();
     }
     
-    void appendParagraph(String content) {
+    @Override
+    public void appendParagraph(String content) {
         startPause();
         
         lines.add(new LineContent(content, true));
@@ -249,7 +289,8 @@ class StoryPanel extends JTextPane implements HabitualRefresher {
         endPause();
     }
     
-    void appendOther(String content) {
+    @Override
+    public void appendOther(String content) {
         if (content.isEmpty()) return; // Do not append empty content
         
         startPause();
@@ -259,7 +300,8 @@ class StoryPanel extends JTextPane implements HabitualRefresher {
         endPause();
     }
     
-    void clearScreen() {
+    @Override
+    public void clearScreen() {
         startPause();
         
         lines.clear();
@@ -267,30 +309,38 @@ class StoryPanel extends JTextPane implements HabitualRefresher {
         endPause();
     }
     
-    private int getMinimumWidth() {
-        return Math.round((float)Toolkit.getDefaultToolkit()
-                .getScreenSize().height * (2f / 5f));
+    @Override
+    public boolean pressToContinue() {
+        // The player prompt shows a button, and the core waits on it
+        return true;
+    }
+    
+    @Override
+    public void flush() {
+        // The refresh thread handles updating the display
     }
     
     private int getPreferredWidth() {
-        int screenRatio = Math.round((float)Toolkit.getDefaultToolkit()
-                .getScreenSize().height * (3f / 5f));
-        return Math.min(layeredParent.getWidth(), screenRatio);
+        return layoutMetrics.getStoryPanelPreferredWidth(layeredParent.getWidth());
     }
     
     @Override
     public Dimension getMinimumSize() {
-        int min = getMinimumWidth();
-        return new Dimension(min, min);
+        return layoutMetrics.getStoryPanelMinimum();
     }
     
     @Override
     public Dimension getPreferredSize() {
-        return new Dimension(getPreferredWidth(), super.getPreferredSize().height);
+        // The super method already gives us a fresh copy, so we can reuse it
+        Dimension size = super.getPreferredSize();
+        size.width = getPreferredWidth();
+        return size;
     }
     
     @Override
     public Dimension getMaximumSize() {
-        return new Dimension(getPreferredWidth(), super.getMaximumSize().height);
+        Dimension size = super.getMaximumSize();
+        size.width = getPreferredWidth();
+        return size;
     }
 }
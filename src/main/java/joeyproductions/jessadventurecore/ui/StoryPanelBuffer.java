@@ -23,6 +23,8 @@
  */
 package joeyproductions.jessadventurecore.ui;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
@@ -35,9 +37,35 @@ class StoryPanelBuffer {
     
     final ConcurrentLinkedQueue<StoryPanelInstruction> buffer;
     StoryPanelInstruction pauseReason;
+    private TranscriptJournal journal;
     
     StoryPanelBuffer() {
         this.buffer = new ConcurrentLinkedQueue<>();
         this.pauseReason = null;
+        this.journal = null;
+    }
+    
+    void queue(StoryPanelInstruction instr) {
+        if (journal != null) {
+            journal.append(instr);
+        }
+        buffer.add(instr);
+    }
+    
+    void openJournal(Path path, boolean restore) {
+        try {
+            journal = TranscriptJournal.open(path, restore);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not open transcript journal at " + path, ex);
+        }
+        
+        if (restore) {
+            journal.replayInto(this);
+        }
+        
+        TranscriptJournal openedJournal = journal;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            openedJournal.close();
+        }));
     }
 }
@@ -29,7 +29,9 @@ package joeyproductions.jessadventurecore.ui;
  * 
  * @author Joseph Cramsey
  */
-public interface StoryPanelInstruction {
+public sealed interface StoryPanelInstruction
+        permits PostLineInstruction, ClearScreenInstruction,
+        PressToContinueInstruction {
     
-    //
+    public InstructionKind getKind();
 }
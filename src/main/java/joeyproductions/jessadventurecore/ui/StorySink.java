@@ -0,0 +1,51 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+/**
+ * Anything that can display the story output of the game.
+ * The StoryPanel is the usual sink, but the story can be sent elsewhere,
+ * such as a terminal, when there is no display to draw on.
+ * @author Joseph Cramsey
+ */
+public interface StorySink {
+    
+    public void append(String content);
+    public void appendDirectly(String content);
+    public void appendParagraph(String content);
+    public void appendOther(String content);
+    public void clearScreen();
+    
+    /**
+     * Asks the player to continue.
+     * @return true if the story must wait for the player, or false if the
+     * sink has no way of waiting, and the story should just keep going.
+     */
+    public boolean pressToContinue();
+    
+    /**
+     * Called after a batch of instructions has been written.
+     */
+    public void flush();
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers the last few suggestion lists the prompt came up with, so that
+ * backspacing, retyping, and moving the caret around don't have to parse the
+ * same input over and over.
+ * 
+ * A suggestion list only depends on the world version, the part of the
+ * input before the working word, and the working word itself, so those make
+ * up the key. The world only ever moves forward, so as soon as a newer
+ * version shows up, everything from older versions is thrown out.
+ * 
+ * When full, the least recently used list is dropped.
+ * 
+ * @author Joseph Cramsey
+ */
+public class SuggestionCache {
+    
+    static final int DEFAULT_CAPACITY = 64;
+    
+    static final class Key {
+        
+        final long worldVersion;
+        final String relevantPart;
+        final String workingWord;
+        
+        Key(long worldVersion, String relevantPart, String workingWord) {
+            this.worldVersion = worldVersion;
+            this.relevantPart = relevantPart;
+            this.workingWord = workingWord;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key)obj;
+            return worldVersion == other.worldVersion
+                    && relevantPart.equals(other.relevantPart)
+                    && workingWord.equals(other.workingWord);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(worldVersion, relevantPart, workingWord);
+        }
+    }
+    
+    private final LinkedHashMap<Key, SortableSuggestion[]> entries;
+    private long currentVersion;
+    private long hitCount;
+    private long missCount;
+    
+    SuggestionCache(int capacity) {
+        // Access order turns the map into an LRU list
+        this.entries = new LinkedHashMap<Key, SortableSuggestion[]>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SortableSuggestion[]> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.currentVersion = Long.MIN_VALUE;
+        this.hitCount = 0;
+        this.missCount = 0;
+    }
+    
+    /**
+     * @return the suggestions for this key, or null if they need to be
+     * worked out
+     */
+    synchronized SortableSuggestion[] get(Key key) {
+        moveToVersion(key.worldVersion);
+        SortableSuggestion[] suggestions = entries.get(key);
+        if (suggestions == null) {
+            missCount++;
+        }
+        else {
+            hitCount++;
+        }
+        return suggestions;
+    }
+    
+    /**
+     * Checks for a key without counting it as a lookup, for the speculator,
+     * which shouldn't make the hit rate look better or worse than it is.
+     */
+    synchronized boolean contains(Key key) {
+        moveToVersion(key.worldVersion);
+        return entries.containsKey(key);
+    }
+    
+    synchronized void put(Key key, SortableSuggestion[] suggestions) {
+        moveToVersion(key.worldVersion);
+        // Don't let a slow lookup from an old version sneak back in
+        if (key.worldVersion < currentVersion) return;
+        entries.put(key, suggestions);
+    }
+    
+    private void moveToVersion(long worldVersion) {
+        if (worldVersion > currentVersion) {
+            entries.clear();
+            currentVersion = worldVersion;
+        }
+    }
+    
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+    
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+    
+    /**
+     * @return the fraction of lookups that were hits, from 0 to 1
+     */
+    public synchronized double getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double)hitCount / total;
+    }
+    
+    public synchronized void resetCounters() {
+        hitCount = 0;
+        missCount = 0;
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "Suggestion cache: " + entries.size() + " entries, "
+                + hitCount + " hits, " + missCount + " misses";
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Insets;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.util.Map;
+import javax.swing.JComponent;
+import javax.swing.UIManager;
+
+/**
+ * A custom-painted list of autocomplete suggestions.
+ * The suggestions are kept in a fixed pool of slots, and painted directly,
+ * so following every keystroke does not mean building and laying out a new
+ * set of labels each time.
+ * @author Joseph Cramsey
+ */
+class SuggestionListView extends JComponent {
+    
+    private String[] slots;
+    private int slotCount;
+    private final Dimension preferredSize;
+    
+    SuggestionListView(int capacity) {
+        slots = new String[Math.max(1, capacity)];
+        slotCount = 0;
+        preferredSize = new Dimension();
+        updateUI();
+    }
+    
+    @Override
+    public final void updateUI() {
+        setFont(UIManager.getFont("Label.font"));
+        setForeground(UIManager.getColor("Label.foreground"));
+        if (preferredSize != null) {
+            measure();
+        }
+    }
+    
+    /**
+     * Loads new suggestions into the slots.
+     * @return true if the size of the list has changed, and its parent needs
+     * to lay it out again
+     */
+    boolean setSuggestions(String[] suggestions, int count) {
+        if (count > slots.length) {
+            slots = new String[count];
+        }
+        
+        boolean changed = count != slotCount;
+        for (int i = 0; i < count; i++) {
+            changed |= !suggestions[i].equals(slots[i]);
+            slots[i] = suggestions[i];
+        }
+        for (int i = count; i < slotCount; i++) {
+            slots[i] = null;
+        }
+        slotCount = count;
+        
+        if (!changed) return false;
+        
+        int oldWidth = preferredSize.width;
+        int oldHeight = preferredSize.height;
+        measure();
+        repaint();
+        
+        return oldWidth != preferredSize.width || oldHeight != preferredSize.height;
+    }
+    
+    private void measure() {
+        FontMetrics metrics = getFontMetrics(getFont());
+        int width = 0;
+        for (int i = 0; i < slotCount; i++) {
+            width = Math.max(width, metrics.stringWidth(slots[i]));
+        }
+        Insets insets = getInsets();
+        preferredSize.setSize(
+                width + insets.left + insets.right,
+                (metrics.getHeight() * slotCount) + insets.top + insets.bottom
+        );
+    }
+    
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(preferredSize);
+    }
+    
+    @Override
+    public Dimension getMinimumSize() {
+        return getPreferredSize();
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D)g;
+        Object hints = Toolkit.getDefaultToolkit()
+                .getDesktopProperty("awt.font.desktophints");
+        if (hints instanceof Map) {
+            g2.addRenderingHints((Map<?, ?>)hints);
+        }
+        else {
+            g2.setRenderingHint(
+                    RenderingHints.KEY_TEXT_ANTIALIASING,
+                    RenderingHints.VALUE_TEXT_ANTIALIAS_ON
+            );
+        }
+        
+        g2.setFont(getFont());
+        g2.setColor(getForeground());
+        FontMetrics metrics = g2.getFontMetrics();
+        Insets insets = getInsets();
+        int y = insets.top + metrics.getAscent();
+        
+        for (int i = 0; i < slotCount; i++) {
+            g2.drawString(slots[i], insets.left, y);
+            y += metrics.getHeight();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import joeyproductions.jessadventurecore.world.WorldVersion;
+
+/**
+ * Guesses at what the player will type next, while they're not typing, and
+ * fills the suggestion cache ahead of time.
+ * 
+ * Once the prompt has shown its suggestions, the likeliest next inputs are:
+ *   - accepting one of them, and then starting a new word
+ *   - starting to type one of them, if the player just hit space
+ * Each guess gets parsed and scored on a background thread, and stored under
+ * the same key the prompt would look up, so when the guess comes true, the
+ * suggestions are already waiting.
+ * 
+ * Every speculation belongs to a generation. Any new input bumps the
+ * generation, and work from an older one is dropped between guesses, and
+ * never stored.
+ * 
+ * @author Joseph Cramsey
+ */
+class SuggestionSpeculator {
+    
+    // How long the input has to sit still before we start guessing
+    static final long IDLE_DELAY_MILLIS = 150;
+    
+    private final SuggestionCache cache;
+    private final ScheduledExecutorService executor;
+    private final AtomicLong generation;
+    private ScheduledFuture<?> pending;
+    
+    // Only the speculation thread uses these
+    private final ParseScratch scratch = new ParseScratch();
+    private final ArrayList<SortableSuggestion> work = new ArrayList<>();
+    private final int[] guessIndices = new int[] { 0, 0 };
+    
+    SuggestionSpeculator(SuggestionCache cache) {
+        this.cache = cache;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Suggestion speculation");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.generation = new AtomicLong(0);
+    }
+    
+    /**
+     * Drops whatever is being guessed at, because the input changed.
+     */
+    void cancel() {
+        generation.incrementAndGet();
+        synchronized (this) {
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+        }
+    }
+    
+    /**
+     * Schedules guesses that follow on from the suggestions being shown.
+     * @param suggestions what the prompt is showing for this input
+     */
+    void speculate(WorldVersion world, String sterileInput, int[] workingIndices,
+            String workingWord, SortableSuggestion[] suggestions) {
+        ArrayList<String> guesses = createGuesses(
+                sterileInput, workingIndices, workingWord, suggestions
+        );
+        if (guesses.isEmpty()) return;
+        
+        long myGeneration = generation.incrementAndGet();
+        synchronized (this) {
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            pending = executor.schedule(
+                    () -> runGuesses(world, guesses, myGeneration),
+                    IDLE_DELAY_MILLIS, TimeUnit.MILLISECONDS
+            );
+        }
+    }
+    
+    private static ArrayList<String> createGuesses(String sterileInput,
+            int[] workingIndices, String workingWord,
+            SortableSuggestion[] suggestions) {
+        // Everything before the word that the suggestions would replace
+        boolean startingWord = workingWord.equals(" ");
+        String header = startingWord
+                ? sterileInput
+                : sterileInput.substring(0, workingIndices[0]);
+        
+        // The best suggestions are at the end of the list
+        ArrayList<String> guesses = new ArrayList<>();
+        for (int i = suggestions.length - 1; i >= 0; i--) {
+            String word = suggestions[i].suggestion.str;
+            if (word.isEmpty()) continue;
+            
+            String accepted = header + word + " ";
+            if (!guesses.contains(accepted)) {
+                guesses.add(accepted);
+            }
+            if (startingWord) {
+                String started = header + word.charAt(0);
+                if (!guesses.contains(started)) {
+                    guesses.add(started);
+                }
+            }
+        }
+        return guesses;
+    }
+    
+    private void runGuesses(WorldVersion world, ArrayList<String> guesses,
+            long myGeneration) {
+        for (String guess : guesses) {
+            if (generation.get() != myGeneration) return;
+            
+            // Every guess leaves the caret at the end
+            PlayerPrompt.getWorkingIndices(
+                    new StringCaretPair(guess, guess.length()), guessIndices
+            );
+            String workingWord = PlayerPrompt.getWorkingWord(
+                    guess, guess.length(), guessIndices
+            );
+            SuggestionCache.Key key = new SuggestionCache.Key(world.number,
+                    PromptContext.getRelevantPart(guess, guessIndices),
+                    workingWord
+            );
+            if (cache.contains(key)) continue;
+            
+            SortableSuggestion[] suggestions = PlayerPrompt.findSuggestions(
+                    world, guess, guessIndices, workingWord, scratch, work, false
+            );
+            if (suggestions == null) continue;
+            
+            // The player may have moved on while we were parsing
+            if (generation.get() != myGeneration) return;
+            cache.put(key, suggestions);
+        }
+    }
+}
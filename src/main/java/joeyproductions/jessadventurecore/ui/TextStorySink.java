@@ -0,0 +1,307 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A story sink which renders the story's HTML as plain text, or as text with
+ * ANSI styling, and streams it to an OutputStream.
+ * This needs no display, so games can run in a terminal, or in automated
+ * playtests.
+ * @author Joseph Cramsey
+ */
+public class TextStorySink implements StorySink {
+    
+    private static final String INDENT = "   ";
+    private static final String ANSI_RESET = "\u001b[0m";
+    private static final String ANSI_BOLD = "\u001b[1m";
+    private static final String ANSI_ITALIC = "\u001b[3m";
+    private static final String ANSI_CLEAR = "\u001b[2J\u001b[H";
+    
+    private final Writer writer;
+    private final boolean useAnsi;
+    private final StringBuilder tagBuffer;
+    
+    // What we last wrote, so we know how to separate the next content
+    private char lastChar;
+    private boolean inParagraph;
+    private boolean wroteAnything;
+    
+    public TextStorySink(OutputStream out, boolean useAnsi) {
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8)
+        );
+        this.useAnsi = useAnsi;
+        this.tagBuffer = new StringBuilder();
+        this.lastChar = '\n';
+        this.inParagraph = false;
+        this.wroteAnything = false;
+    }
+    
+    @Override
+    public void append(String content) {
+        if (content.isBlank()) return; // Do not indirectly append blank content
+        
+        if (!inParagraph) {
+            startParagraph();
+        }
+        else if (!Character.isWhitespace(lastChar)) {
+            write(" ");
+        }
+        writeHTML(content);
+    }
+    
+    @Override
+    public void appendDirectly(String content) {
+        if (content.isEmpty()) return; // Do not append empty content
+        
+        if (!inParagraph) {
+            startParagraph();
+        }
+        writeHTML(content);
+    }
+    
+    @Override
+    public void appendParagraph(String content) {
+        startParagraph();
+        writeHTML(content);
+    }
+    
+    @Override
+    public void appendOther(String content) {
+        if (content.isEmpty()) return; // Do not append empty content
+        
+        if (inParagraph) {
+            newLine();
+            inParagraph = false;
+        }
+        writeHTML(content);
+    }
+    
+    @Override
+    public void clearScreen() {
+        if (useAnsi) {
+            write(ANSI_CLEAR);
+            lastChar = '\n';
+            wroteAnything = false;
+        }
+        else {
+            newLine();
+            write("\n----\n");
+        }
+        inParagraph = false;
+    }
+    
+    @Override
+    public boolean pressToContinue() {
+        newLine();
+        write(useAnsi ? ANSI_ITALIC + "[continue]" + ANSI_RESET : "[continue]");
+        write("\n");
+        inParagraph = false;
+        
+        // There is nobody to press anything, so keep going
+        return false;
+    }
+    
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not write story output!", ex);
+        }
+    }
+    
+    private void startParagraph() {
+        newLine();
+        if (wroteAnything) {
+            // Paragraphs are separated by a blank line
+            write("\n");
+        }
+        write(INDENT);
+        inParagraph = true;
+    }
+    
+    private void newLine() {
+        if (lastChar != '\n') {
+            write("\n");
+        }
+    }
+    
+    private void write(String str) {
+        if (str.isEmpty()) return;
+        try {
+            writer.write(str);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not write story output!", ex);
+        }
+        lastChar = str.charAt(str.length() - 1);
+        wroteAnything = true;
+    }
+    
+    private void write(char c) {
+        try {
+            writer.write(c);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not write story output!", ex);
+        }
+        lastChar = c;
+        wroteAnything = true;
+    }
+    
+    /**
+     * Strips the tags out of an HTML fragment, in a single pass, turning the
+     * ones we understand into line breaks and styling.
+     */
+    private void writeHTML(String html) {
+        int length = html.length();
+        
+        for (int i = 0; i < length; i++) {
+            char c = html.charAt(i);
+            
+            if (c == '<') {
+                int end = html.indexOf('>', i);
+                if (end < 0) {
+                    // Not actually a tag
+                    write(c);
+                    continue;
+                }
+                tagBuffer.setLength(0);
+                tagBuffer.append(html, i + 1, end);
+                handleTag();
+                i = end;
+            }
+            else if (c == '&') {
+                int end = html.indexOf(';', i);
+                if (end < 0 || end - i > 8) {
+                    // Not actually an entity
+                    write(c);
+                    continue;
+                }
+                writeEntity(html.substring(i + 1, end));
+                i = end;
+            }
+            else if (c == '\n' || c == '\r') {
+                // HTML does not care about line breaks in the source
+                if (!Character.isWhitespace(lastChar)) write(' ');
+            }
+            else {
+                write(c);
+            }
+        }
+    }
+    
+    private void handleTag() {
+        boolean isClosing = tagBuffer.length() > 0 && tagBuffer.charAt(0) == '/';
+        int nameStart = isClosing ? 1 : 0;
+        int nameEnd = nameStart;
+        while (nameEnd < tagBuffer.length()
+                && Character.isLetterOrDigit(tagBuffer.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        String name = tagBuffer.substring(nameStart, nameEnd).toLowerCase();
+        
+        switch (name) {
+            case "br":
+                write("\n");
+                break;
+            case "p":
+                if (isClosing) {
+                    inParagraph = false;
+                }
+                else {
+                    startParagraph();
+                }
+                break;
+            case "li":
+                if (!isClosing) {
+                    newLine();
+                    write("  * ");
+                }
+                break;
+            case "ul":
+            case "ol":
+                newLine();
+                break;
+            case "h1":
+            case "h2":
+            case "h3":
+                if (!isClosing) {
+                    newLine();
+                    if (wroteAnything) write("\n");
+                    if (useAnsi) write(ANSI_BOLD);
+                }
+                else {
+                    if (useAnsi) write(ANSI_RESET);
+                    newLine();
+                }
+                inParagraph = false;
+                break;
+            case "b":
+            case "strong":
+                if (useAnsi) write(isClosing ? ANSI_RESET : ANSI_BOLD);
+                break;
+            case "i":
+            case "em":
+                if (useAnsi) write(isClosing ? ANSI_RESET : ANSI_ITALIC);
+                break;
+            default:
+                // Anything else only matters to Swing
+                break;
+        }
+    }
+    
+    private void writeEntity(String entity) {
+        switch (entity) {
+            case "nbsp":
+                write(' ');
+                break;
+            case "amp":
+                write('&');
+                break;
+            case "lt":
+                write('<');
+                break;
+            case "gt":
+                write('>');
+                break;
+            case "quot":
+                write('"');
+                break;
+            case "#39":
+            case "apos":
+                write('\'');
+                break;
+            default:
+                write("&" + entity + ";");
+                break;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+/**
+ * Cuts the player's input into tokens at spaces, in one pass, without making
+ * any strings.
+ * 
+ * Each token is kept as three ints in a reused buffer: where it starts,
+ * where it ends, and the hash of its lowercase spelling. The hash is exactly
+ * what String.hashCode() would give for the lowercase token, and extendHash()
+ * can grow it across the spaces to the next token, so a run of tokens can be
+ * looked up against the vocabulary without ever cutting out a substring.
+ * 
+ * The buffer only grows, so once it's big enough for the longest command,
+ * tokenizing allocates nothing. Like the rest of the parse scratch, an
+ * instance should stay on one thread.
+ * 
+ * @author Joseph Cramsey
+ */
+final class Tokenizer {
+    
+    private static final int FIELDS = 3;
+    private static final int START = 0;
+    private static final int END = 1;
+    private static final int HASH = 2;
+    
+    private int[] records;
+    private int count;
+    
+    Tokenizer() {
+        this.records = new int[16 * FIELDS];
+        this.count = 0;
+    }
+    
+    /**
+     * Forgets the last input, and tokenizes this one.
+     * @return the number of tokens
+     */
+    int tokenize(CharSequence input) {
+        count = 0;
+        int length = input.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && input.charAt(i) == ' ') i++;
+            if (i >= length) break;
+            
+            int start = i;
+            int hash = 0;
+            char c;
+            while (i < length && (c = input.charAt(i)) != ' ') {
+                hash = 31 * hash + fold(c);
+                i++;
+            }
+            add(start, i, hash);
+        }
+        return count;
+    }
+    
+    private void add(int start, int end, int hash) {
+        int offset = count * FIELDS;
+        if (offset + FIELDS > records.length) {
+            int[] grown = new int[records.length * 2];
+            System.arraycopy(records, 0, grown, 0, records.length);
+            records = grown;
+        }
+        records[offset + START] = start;
+        records[offset + END] = end;
+        records[offset + HASH] = hash;
+        count++;
+    }
+    
+    int getCount() {
+        return count;
+    }
+    
+    int getStart(int token) {
+        return records[token * FIELDS + START];
+    }
+    
+    int getEnd(int token) {
+        return records[token * FIELDS + END];
+    }
+    
+    int getHash(int token) {
+        return records[token * FIELDS + HASH];
+    }
+    
+    /**
+     * Grows the hash of a run of tokens to also cover the next one, and
+     * the spaces before it.
+     * @param hash the hash of the run so far
+     * @param token the token right after the run
+     */
+    int extendHash(int hash, int token) {
+        int start = getStart(token);
+        int gap = start - getEnd(token - 1);
+        for (int i = 0; i < gap; i++) {
+            hash = 31 * hash + ' ';
+        }
+        // hash * 31^length, the same as hashing the token's chars one by one
+        int length = getEnd(token) - start;
+        for (int i = 0; i < length; i++) {
+            hash *= 31;
+        }
+        return hash + getHash(token);
+    }
+    
+    /**
+     * @return true if the input, from the first token through the last, is
+     * spelled like this, ignoring case
+     */
+    boolean spanMatches(CharSequence input, int firstToken, int lastToken,
+            String spelling) {
+        int from = getStart(firstToken);
+        int to = getEnd(lastToken);
+        if (to - from != spelling.length()) return false;
+        for (int i = from; i < to; i++) {
+            if (fold(input.charAt(i)) != fold(spelling.charAt(i - from))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return what String.hashCode() would give for the lowercase string
+     */
+    static int foldedHash(CharSequence str) {
+        int hash = 0;
+        for (int i = 0; i < str.length(); i++) {
+            hash = 31 * hash + fold(str.charAt(i));
+        }
+        return hash;
+    }
+    
+    private static char fold(char c) {
+        // Only typable characters make it this far, so ASCII is enough
+        return (c >= 'A' && c <= 'Z') ? (char)(c + ('a' - 'A')) : c;
+    }
+}
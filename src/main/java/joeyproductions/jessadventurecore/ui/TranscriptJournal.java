@@ -0,0 +1,280 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * An append-only record of every story instruction, written to a
+ * memory-mapped file as the instruction is queued.
+ * 
+ * Because the file is mapped, writing a record is just a few stores into
+ * memory, and the OS keeps the pages even if the game crashes. We only make a
+ * syscall when the mapped region fills up and has to grow.
+ * 
+ * The layout is an 8-byte header (magic, version), followed by records of:
+ *   [kind: 1 byte] [length: varint] [UTF-8 content: length bytes]
+ * Only post instructions have a length and content. The kind byte is written
+ * last, so a record cut short by a crash reads as the end of the journal.
+ * A kind byte of zero marks the end of the journal, and one is written after
+ * every record before the record is committed, so whatever a torn record
+ * left behind it can never be read as more records.
+ * 
+ * @author Joseph Cramsey
+ */
+public class TranscriptJournal {
+    
+    private static final int MAGIC = 0x4A41544A; // "JATJ"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int INITIAL_REGION_SIZE = 1 << 20;
+    private static final byte END_OF_JOURNAL = 0;
+    
+    private static final InstructionKind[] KINDS = InstructionKind.values();
+    
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private int position;
+    
+    private TranscriptJournal(FileChannel channel) {
+        this.channel = channel;
+    }
+    
+    /**
+     * Opens a journal for writing.
+     * @param path where the journal lives
+     * @param keepExisting if true, new records go after the ones already in
+     * the file, so they can be replayed. Otherwise, the file starts over.
+     */
+    static TranscriptJournal open(Path path, boolean keepExisting) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+        
+        if (!keepExisting) {
+            channel.truncate(0);
+        }
+        
+        TranscriptJournal journal = new TranscriptJournal(channel);
+        long existingSize = channel.size();
+        journal.remap(Math.max(existingSize, INITIAL_REGION_SIZE));
+        
+        if (existingSize < HEADER_SIZE) {
+            journal.map.putInt(0, MAGIC);
+            journal.map.putInt(4, VERSION);
+            journal.position = HEADER_SIZE;
+        }
+        else {
+            checkHeader(journal.map, path);
+            journal.position = scanToEnd(journal.map, null);
+            // Anything past here is a torn record, so cut it off
+            if (journal.position < journal.map.capacity()) {
+                journal.map.put(journal.position, END_OF_JOURNAL);
+            }
+        }
+        
+        return journal;
+    }
+    
+    /**
+     * Reads every instruction out of a journal, without opening it for writing.
+     * This is safe to use on a journal that a running game is still writing to.
+     */
+    public static ArrayList<StoryPanelInstruction> read(Path path) throws IOException {
+        ArrayList<StoryPanelInstruction> instructions = new ArrayList<>();
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return instructions;
+            }
+            
+            MappedByteBuffer readMap =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkHeader(readMap, path);
+            scanToEnd(readMap, instructions);
+        }
+        
+        return instructions;
+    }
+    
+    synchronized void append(StoryPanelInstruction instr) {
+        InstructionKind kind = instr.getKind();
+        
+        if (!kind.isPost()) {
+            ensureRoom(2);
+            map.put(position + 1, END_OF_JOURNAL);
+            map.put(position, (byte)(kind.ordinal() + 1));
+            position++;
+            return;
+        }
+        
+        byte[] content = ((PostLineInstruction)instr).content
+                .getBytes(StandardCharsets.UTF_8);
+        ensureRoom(1 + 5 + content.length + 1);
+        
+        int writeHead = position + 1;
+        int length = content.length;
+        while ((length & ~0x7F) != 0) {
+            map.put(writeHead++, (byte)((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        map.put(writeHead++, (byte)length);
+        map.put(writeHead, content);
+        writeHead += content.length;
+        map.put(writeHead, END_OF_JOURNAL);
+        
+        // Commit the record by writing its kind last
+        map.put(position, (byte)(kind.ordinal() + 1));
+        position = writeHead;
+    }
+    
+    /**
+     * Loads everything since the last screen clear back into the buffer, so
+     * the story panel can be rebuilt without redoing cleared-away content.
+     * Presses to continue are skipped, because the player already got past
+     * them last session.
+     */
+    synchronized void replayInto(StoryPanelBuffer storyPanelBuffer) {
+        ArrayList<StoryPanelInstruction> instructions = new ArrayList<>();
+        scanToEnd(map, instructions);
+        
+        int start = 0;
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            if (instructions.get(i).getKind() == InstructionKind.CLEAR_SCREEN) {
+                start = i;
+                break;
+            }
+        }
+        
+        for (int i = start; i < instructions.size(); i++) {
+            StoryPanelInstruction instr = instructions.get(i);
+            if (instr.getKind() != InstructionKind.PRESS_TO_CONTINUE) {
+                storyPanelBuffer.buffer.add(instr);
+            }
+        }
+    }
+    
+    synchronized void close() {
+        try {
+            map.force();
+            channel.close();
+        } catch (IOException ex) {
+            ex.printStackTrace(System.err);
+        }
+    }
+    
+    private void ensureRoom(int byteCount) {
+        // Always leave room for the zero that marks the end of the journal
+        if (position + byteCount < map.capacity()) return;
+        
+        long newSize = (long)map.capacity() * 2;
+        while (newSize <= position + byteCount) {
+            newSize *= 2;
+        }
+        
+        try {
+            remap(newSize);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not grow the transcript journal!", ex);
+        }
+    }
+    
+    private void remap(long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Transcript journal cannot grow past 2GB.");
+        }
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    
+    private static void checkHeader(ByteBuffer source, Path path) throws IOException {
+        if (source.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a transcript journal!");
+        }
+        if (source.getInt(4) != VERSION) {
+            throw new IOException(path + " is journal version "
+                    + source.getInt(4) + ", but only version "
+                    + VERSION + " is supported.");
+        }
+    }
+    
+    /**
+     * Walks the records, optionally decoding them into the given list.
+     * @return the position just after the last complete record
+     */
+    private static int scanToEnd(ByteBuffer source,
+            ArrayList<StoryPanelInstruction> decoded) {
+        int readHead = HEADER_SIZE;
+        int limit = source.limit();
+        
+        while (readHead < limit) {
+            byte kindByte = source.get(readHead);
+            if (kindByte <= END_OF_JOURNAL || kindByte > KINDS.length) break;
+            
+            InstructionKind kind = KINDS[kindByte - 1];
+            int recordStart = readHead;
+            readHead++;
+            
+            if (!kind.isPost()) {
+                if (decoded != null) {
+                    decoded.add(kind == InstructionKind.CLEAR_SCREEN
+                            ? new ClearScreenInstruction()
+                            : new PressToContinueInstruction());
+                }
+                continue;
+            }
+            
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (readHead >= limit) return recordStart;
+                b = source.get(readHead++);
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            
+            if (length < 0 || readHead + length > limit) return recordStart;
+            
+            if (decoded != null) {
+                byte[] content = new byte[length];
+                source.get(readHead, content);
+                decoded.add(new PostLineInstruction(
+                        new String(content, StandardCharsets.UTF_8), kind
+                ));
+            }
+            readHead += length;
+        }
+        
+        return readHead;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.util.List;
+import java.util.TreeSet;
+import joeyproductions.jessadventurecore.world.VocabularyWord;
+import joeyproductions.jessadventurecore.world.WorldVersion;
+
+/**
+ * The vocabulary that is relevant in one world version, grouped by the hash
+ * of each lowercase spelling, so the chart parser can look up a span of
+ * tokens without cutting out a substring. Which tokens can start a verb
+ * phrase only depends on the verbs, so that table lives in the verb lexicon.
+ * 
+ * A world version never changes, so neither does its vocabulary. The parse
+ * scratch keeps the index for the last version it parsed against, and only
+ * builds a new one when the version changes, instead of on every keystroke.
+ * 
+ * @author Joseph Cramsey
+ */
+final class VocabularyIndex {
+    
+    final WorldVersion world;
+    // Everything relevant, for anything that needs to walk all of it
+    final TreeSet<VocabularyWord> vocab;
+    // No span longer than this can be spelled like any word
+    final int longestSpelling;
+    // Nor can a span of more tokens than this
+    final int longestTokenCount;
+    
+    private final HashBuckets<VocabularyWord> byHash;
+    
+    VocabularyIndex(WorldVersion world) {
+        this.world = world;
+        this.vocab = new TreeSet<>();
+        world.loadRelevantVocabulary(vocab);
+        
+        // Empty spellings can't cover any tokens, so they're left out
+        this.byHash = new HashBuckets<>();
+        int longest = 0;
+        int mostTokens = 0;
+        for (VocabularyWord word : vocab) {
+            if (word.str.isEmpty()) continue;
+            byHash.add(Tokenizer.foldedHash(word.str), word);
+            longest = Math.max(longest, word.str.length());
+            mostTokens = Math.max(mostTokens, countTokens(word.str));
+        }
+        this.longestSpelling = longest;
+        this.longestTokenCount = mostTokens;
+    }
+    
+    /**
+     * Vocabulary never has leading or repeated spaces, so every space starts
+     * another token.
+     */
+    private static int countTokens(String spelling) {
+        int count = 1;
+        for (int i = 0; i < spelling.length(); i++) {
+            if (spelling.charAt(i) == ' ') count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Two spellings can share a hash, so the caller still has to check that
+     * each word really is spelled like what it was looking for.
+     * @return every word whose lowercase spelling has this hash
+     */
+    List<VocabularyWord> getCandidates(int hash) {
+        return byHash.get(hash);
+    }
+}
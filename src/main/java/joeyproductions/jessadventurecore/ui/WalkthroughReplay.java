@@ -0,0 +1,236 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.ui;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import joeyproductions.jessadventurecore.world.World;
+
+/**
+ * Replays a recorded list of commands through a headless adventure, as fast
+ * as it can, and reports how long each stage took.
+ * 
+ * Every command goes through the same stages as one typed into the prompt:
+ * parsing, running the verb's action, and writing the story out. Here they
+ * all run one after another on the calling thread, so each stage can be
+ * timed on its own, and the same world with the same log always does the
+ * same work, which makes it easy to profile.
+ * 
+ * A command log is a text file with one command per line. Blank lines, and
+ * lines starting with '#', are skipped.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class WalkthroughReplay {
+    
+    /**
+     * The latency of one stage, over every command that was replayed.
+     */
+    public static final class StageLatency {
+        
+        public final String stage;
+        private final long[] sortedNanos;
+        
+        private StageLatency(String stage, long[] nanos) {
+            this.stage = stage;
+            this.sortedNanos = nanos.clone();
+            Arrays.sort(sortedNanos);
+        }
+        
+        /**
+         * @param percentile from 0 to 100
+         * @return the latency in nanoseconds, by nearest rank
+         */
+        public long getPercentile(double percentile) {
+            if (sortedNanos.length == 0) return 0;
+            int rank = (int)Math.ceil(percentile / 100.0 * sortedNanos.length);
+            rank = Math.max(1, Math.min(sortedNanos.length, rank));
+            return sortedNanos[rank - 1];
+        }
+        
+        public long getMax() {
+            return getPercentile(100);
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%-8s p50 %9.1f us   p90 %9.1f us   p99 %9.1f us   max %9.1f us",
+                    stage,
+                    getPercentile(50) / 1000.0,
+                    getPercentile(90) / 1000.0,
+                    getPercentile(99) / 1000.0,
+                    getMax() / 1000.0
+            );
+        }
+    }
+    
+    /**
+     * Everything measured during one replay.
+     */
+    public static final class Report {
+        
+        public final int commandCount;
+        public final int failedParseCount;
+        public final long elapsedNanos;
+        public final long storyBytes;
+        public final StageLatency parse;
+        public final StageLatency execute;
+        public final StageLatency render;
+        
+        private Report(int commandCount, int failedParseCount,
+                long elapsedNanos, long storyBytes,
+                StageLatency parse, StageLatency execute, StageLatency render) {
+            this.commandCount = commandCount;
+            this.failedParseCount = failedParseCount;
+            this.elapsedNanos = elapsedNanos;
+            this.storyBytes = storyBytes;
+            this.parse = parse;
+            this.execute = execute;
+            this.render = render;
+        }
+        
+        public double getCommandsPerSecond() {
+            if (elapsedNanos == 0) return 0;
+            return commandCount / (elapsedNanos / 1E+9);
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Replayed %d commands (%d failed to parse) in %.1f ms: %.0f commands/sec, %d story bytes%n",
+                    commandCount, failedParseCount, elapsedNanos / 1E+6,
+                    getCommandsPerSecond(), storyBytes)
+                    + parse + "\n"
+                    + execute + "\n"
+                    + render;
+        }
+    }
+    
+    /**
+     * Counts the story bytes on their way to the real output.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        
+        long count;
+        
+        CountingOutputStream(OutputStream out) {
+            super(out);
+            this.count = 0;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+    
+    private WalkthroughReplay() {
+        //
+    }
+    
+    /**
+     * Reads a command log, skipping blank lines and comments.
+     */
+    public static List<String> readLog(Path path) throws IOException {
+        ArrayList<String> commands = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            String command = line.trim();
+            if (command.isEmpty() || command.startsWith("#")) continue;
+            commands.add(command);
+        }
+        return commands;
+    }
+    
+    /**
+     * Starts a headless adventure for the world, and replays the commands
+     * through it.
+     * @param out where the story goes, like a null stream to only measure
+     */
+    public static Report replay(String name, String author, World world,
+            List<String> commands, OutputStream out) {
+        CountingOutputStream countingOut = new CountingOutputStream(out);
+        JessAdventureCore.initHeadlessAdventure(name, author, world, countingOut, false);
+        JessAdventureCore core = JessAdventureCore.CORE;
+        CommandPipeline pipeline = core.getCommandPipeline();
+        
+        // The opening story isn't part of the walkthrough
+        long openingBytes = countingOut.count;
+        
+        ParseScratch scratch = new ParseScratch();
+        long[] parseNanos = new long[commands.size()];
+        long[] executeNanos = new long[commands.size()];
+        long[] renderNanos = new long[commands.size()];
+        int failedParseCount = 0;
+        
+        core.setHoldHeadlessStory(true);
+        long replayStart = System.nanoTime();
+        try {
+            for (int i = 0; i < commands.size(); i++) {
+                long start = System.nanoTime();
+                String input = scratch.sanitizer.filter(commands.get(i)).trim();
+                CommandPipeline.ParsedInput parsed =
+                        CommandPipeline.parse(world.pin(), input, scratch);
+                long parsedAt = System.nanoTime();
+                
+                try {
+                    pipeline.perform(parsed);
+                } catch (RuntimeException ex) {
+                    ex.printStackTrace(System.err);
+                }
+                long performedAt = System.nanoTime();
+                
+                core.attemptToWriteStory();
+                long renderedAt = System.nanoTime();
+                
+                if (parsed.command == null) failedParseCount++;
+                parseNanos[i] = parsedAt - start;
+                executeNanos[i] = performedAt - parsedAt;
+                renderNanos[i] = renderedAt - performedAt;
+            }
+        } finally {
+            core.setHoldHeadlessStory(false);
+        }
+        long elapsedNanos = System.nanoTime() - replayStart;
+        
+        return new Report(commands.size(), failedParseCount, elapsedNanos,
+                countingOut.count - openingBytes,
+                new StageLatency("parse", parseNanos),
+                new StageLatency("execute", executeNanos),
+                new StageLatency("render", renderNanos)
+        );
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary of every word used to describe nouns in the world, with an
+ * inverted index from each word to a sorted posting list of the nouns it
+ * describes, by store index.
+ * 
+ * Narrowing down which nouns the player is talking about is then just an
+ * intersection of posting lists, which only costs as much as the lists are
+ * long, no matter how big the world is.
+ * 
+ * Nouns are only ever added, and only by one writer at a time, but parsers
+ * read the index from other threads. So, each posting list's size is
+ * published after its entries are written, and readers always read the
+ * size first. A reader might see nouns newer than its world version, but
+ * never a half-written list.
+ * 
+ * @author Joseph Cramsey
+ */
+public class DescriptorIndex {
+    
+    public static final int NO_WORD = -1;
+    
+    private static final VarHandle LISTS =
+            MethodHandles.arrayElementVarHandle(int[][].class);
+    private static final VarHandle SIZES =
+            MethodHandles.arrayElementVarHandle(int[].class);
+    
+    private final SymbolTable symbols;
+    // Descriptors are matched without case, so each symbol is mapped to
+    // its lowercase entry in the dictionary.
+    private int[] symbolToWord;
+    private final ConcurrentHashMap<String, Integer> dictionary;
+    private final ArrayList<String> words;
+    private volatile int[][] postings;
+    private volatile int[] postingSizes;
+    private int wordCount;
+    
+    DescriptorIndex(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.symbolToWord = new int[0];
+        this.dictionary = new ConcurrentHashMap<>();
+        this.words = new ArrayList<>();
+        this.postings = new int[16][];
+        this.postingSizes = new int[16];
+        this.wordCount = 0;
+    }
+    
+    /**
+     * Adopts an index that was already built, like from a snapshot.
+     * Word w's posting list is postingPool[postingStarts[w]] up to
+     * postingPool[postingStarts[w + 1]].
+     */
+    DescriptorIndex(SymbolTable symbols, String[] words, int[] symbolToWord,
+            int[] postingStarts, int[] postingPool) {
+        this.symbols = symbols;
+        this.symbolToWord = symbolToWord;
+        this.dictionary = new ConcurrentHashMap<>(Math.max(16, words.length));
+        this.words = new ArrayList<>(Arrays.asList(words));
+        this.wordCount = words.length;
+        int[][] lists = new int[Math.max(16, wordCount)][];
+        int[] sizes = new int[lists.length];
+        
+        for (int w = 0; w < wordCount; w++) {
+            dictionary.put(words[w], w);
+            int size = postingStarts[w + 1] - postingStarts[w];
+            // Leave a little room, in case more nouns are added after loading
+            lists[w] = Arrays.copyOfRange(postingPool,
+                    postingStarts[w], postingStarts[w] + Math.max(4, size));
+            sizes[w] = size;
+        }
+        this.postings = lists;
+        this.postingSizes = sizes;
+    }
+    
+    /**
+     * Nouns must be added in order of their store index, which keeps every
+     * posting list sorted without any extra work.
+     */
+    void add(int nounIndex, int symbol) {
+        int word = getWordForSymbol(symbol);
+        int[] sizes = postingSizes;
+        int[][] lists = postings;
+        int size = sizes[word];
+        int[] list = lists[word];
+        
+        // A noun can use the same word twice, like a name and an adjective
+        if (size > 0 && list[size - 1] == nounIndex) return;
+        
+        if (size == list.length) {
+            list = Arrays.copyOf(list, size * 2);
+            LISTS.setRelease(lists, word, list);
+        }
+        list[size] = nounIndex;
+        SIZES.setRelease(sizes, word, size + 1);
+    }
+    
+    private int getWordForSymbol(int symbol) {
+        if (symbol >= symbolToWord.length) {
+            int oldLength = symbolToWord.length;
+            symbolToWord = Arrays.copyOf(symbolToWord,
+                    Math.max(symbol + 1, oldLength * 2));
+            Arrays.fill(symbolToWord, oldLength, symbolToWord.length, NO_WORD);
+        }
+        
+        int word = symbolToWord[symbol];
+        if (word == NO_WORD) {
+            String folded = symbols.get(symbol).toLowerCase();
+            Integer existing = dictionary.get(folded);
+            if (existing == null) {
+                word = addWord(folded);
+            }
+            else {
+                word = existing;
+            }
+            symbolToWord[symbol] = word;
+        }
+        return word;
+    }
+    
+    private int addWord(String folded) {
+        if (wordCount == postings.length) {
+            postingSizes = Arrays.copyOf(postingSizes, wordCount * 2);
+            postings = Arrays.copyOf(postings, wordCount * 2);
+        }
+        int word = wordCount++;
+        LISTS.setRelease(postings, word, new int[4]);
+        words.add(folded);
+        // Readers can only find the word after this
+        dictionary.put(folded, word);
+        return word;
+    }
+    
+    /**
+     * @return the dictionary size, which is how many distinct descriptor
+     * words the world uses
+     */
+    public int size() {
+        return wordCount;
+    }
+    
+    String getWord(int word) {
+        return words.get(word);
+    }
+    
+    /**
+     * @return the dictionary entry for a symbol, or NO_WORD if it was never
+     * used to describe a noun
+     */
+    int getWordForExistingSymbol(int symbol) {
+        if (symbol >= symbolToWord.length) return NO_WORD;
+        return symbolToWord[symbol];
+    }
+    
+    /**
+     * @return the ID of a word in the dictionary, or NO_WORD
+     */
+    public int lookup(String word) {
+        Integer id = dictionary.get(word.toLowerCase());
+        return id == null ? NO_WORD : id;
+    }
+    
+    public int getPostingSize(int word) {
+        return word == NO_WORD ? 0 : (int)SIZES.getAcquire(postingSizes, word);
+    }
+    
+    private int[] getPostingList(int word) {
+        return (int[])LISTS.getAcquire(postings, word);
+    }
+    
+    /**
+     * Copies a word's posting list into the start of a buffer.
+     * @return the buffer, or a bigger one if it did not fit
+     */
+    public int[] copyPostings(int word, int[] buffer) {
+        int size = getPostingSize(word);
+        if (buffer.length < size) {
+            buffer = new int[size];
+        }
+        if (size > 0) {
+            System.arraycopy(getPostingList(word), 0, buffer, 0, size);
+        }
+        return buffer;
+    }
+    
+    /**
+     * Narrows a sorted list of noun indices down to the ones this word also
+     * describes, in place.
+     * @return how many candidates are left at the start of the array
+     */
+    public int intersect(int word, int[] candidates, int candidateCount) {
+        int size = getPostingSize(word);
+        if (size == 0) return 0;
+        
+        int[] list = getPostingList(word);
+        int kept = 0;
+        int i = 0;
+        int j = 0;
+        while (i < candidateCount && j < size) {
+            int candidate = candidates[i];
+            int posting = list[j];
+            if (candidate == posting) {
+                candidates[kept++] = candidate;
+                i++;
+                j++;
+            }
+            else if (candidate < posting) {
+                i++;
+            }
+            else {
+                j++;
+            }
+        }
+        return kept;
+    }
+    
+    public boolean describes(String word, Noun noun) {
+        int id = lookup(word);
+        if (id == NO_WORD) return false;
+        int size = getPostingSize(id);
+        return Arrays.binarySearch(getPostingList(id), 0, size, noun.index) >= 0;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out referable IDs, safely, from any number of threads.
+ * 
+ * Bulk builders reserve a whole block of IDs at once, and then number their
+ * objects from the start of the block in order. That way, the IDs don't
+ * depend on which thread happened to finish first.
+ * 
+ * @author Joseph Cramsey
+ */
+class IdAllocator {
+    
+    private final AtomicLong nextID;
+    
+    IdAllocator() {
+        this.nextID = new AtomicLong(0);
+    }
+    
+    long next() {
+        return nextID.getAndIncrement();
+    }
+    
+    /**
+     * @return the first ID in a block of count IDs, which nobody else will
+     * be given
+     */
+    long reserve(int count) {
+        return nextID.getAndAdd(count);
+    }
+    
+    /**
+     * @return the ID that will be handed out next
+     */
+    long peek() {
+        return nextID.get();
+    }
+    
+    /**
+     * Skips ahead, like after loading a snapshot, so old IDs are not reused.
+     */
+    void advanceTo(long id) {
+        nextID.accumulateAndGet(id, Math::max);
+    }
+}
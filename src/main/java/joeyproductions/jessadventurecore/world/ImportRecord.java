@@ -0,0 +1,333 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.ArrayList;
+
+/**
+ * One line of an import file, after it has been split into fields, but
+ * before anything has been checked or made out of it.
+ * 
+ * CSV lines are positional, with lists separated by semicolons:
+ *   room,name
+ *   noun,names with spaces,room name or blank,adjective;adjective
+ *   verb,spelling,shortcut,synonym;synonym,preposition;preposition
+ * 
+ * JSON lines are flat objects, with lists as arrays of strings:
+ *   {"type": "room", "name": "Beach"}
+ *   {"type": "noun", "names": "bucket pail", "location": "Beach",
+ *    "adjectives": ["red", "sandy"]}
+ *   {"type": "verb", "spelling": "examine", "shortcut": "x",
+ *    "synonyms": ["look at"], "prepositions": []}
+ * 
+ * @author Joseph Cramsey
+ */
+class ImportRecord {
+    
+    private static final String[] NONE = new String[0];
+    
+    String type = "";
+    String name = "";
+    String location = "";
+    String shortcut = "";
+    String[] list = NONE; // Adjectives for nouns, synonyms for verbs
+    String[] prepositions = NONE;
+    
+    static ImportRecord parseCsv(String line) {
+        ArrayList<String> fields = splitCsv(line);
+        ImportRecord record = new ImportRecord();
+        record.type = fields.get(0).trim().toLowerCase();
+        
+        switch (record.type) {
+            case "room":
+                requireFieldCount(fields, 2, 2);
+                record.name = fields.get(1);
+                break;
+            case "noun":
+                requireFieldCount(fields, 2, 4);
+                record.name = fields.get(1);
+                record.location = getField(fields, 2);
+                record.list = splitList(getField(fields, 3));
+                break;
+            case "verb":
+                requireFieldCount(fields, 2, 5);
+                record.name = fields.get(1);
+                record.shortcut = getField(fields, 2);
+                record.list = splitList(getField(fields, 3));
+                record.prepositions = splitList(getField(fields, 4));
+                break;
+            default:
+                throw new RuntimeException("Unknown record type \""
+                        + record.type + "\"");
+        }
+        
+        return record;
+    }
+    
+    static ImportRecord parseJson(String line) {
+        return new JsonReader(line).readRecord();
+    }
+    
+    private static void requireFieldCount(ArrayList<String> fields, int min, int max) {
+        if (fields.size() < min || fields.size() > max) {
+            throw new RuntimeException("Expected " + min + " to " + max
+                    + " fields, but found " + fields.size());
+        }
+    }
+    
+    private static String getField(ArrayList<String> fields, int index) {
+        return index < fields.size() ? fields.get(index) : "";
+    }
+    
+    private static String[] splitList(String field) {
+        if (field.isBlank()) return NONE;
+        String[] items = field.split(";");
+        for (int i = 0; i < items.length; i++) {
+            items[i] = items[i].trim();
+        }
+        return items;
+    }
+    
+    /**
+     * Splits on commas, except inside of double quotes. A doubled quote
+     * inside of quotes is a literal quote.
+     */
+    private static ArrayList<String> splitCsv(String line) {
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean isQuoted = false;
+        
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (isQuoted) {
+                if (c != '"') {
+                    field.append(c);
+                }
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                }
+                else {
+                    isQuoted = false;
+                }
+            }
+            else if (c == '"') {
+                isQuoted = true;
+            }
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else {
+                field.append(c);
+            }
+        }
+        
+        if (isQuoted) {
+            throw new RuntimeException("Unclosed quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+    
+    /**
+     * Just enough JSON to read one flat object of strings and string arrays.
+     */
+    private static class JsonReader {
+        
+        private final String line;
+        private int position;
+        
+        JsonReader(String line) {
+            this.line = line;
+            this.position = 0;
+        }
+        
+        ImportRecord readRecord() {
+            ImportRecord record = new ImportRecord();
+            expect('{');
+            
+            if (peek() != '}') {
+                do {
+                    String key = readString();
+                    expect(':');
+                    readValue(record, key);
+                } while (tryRead(','));
+            }
+            
+            expect('}');
+            skipWhitespace();
+            if (position < line.length()) {
+                throw error("Unexpected text after the object");
+            }
+            
+            record.type = record.type.toLowerCase();
+            if (!record.type.equals("room")
+                    && !record.type.equals("noun")
+                    && !record.type.equals("verb")) {
+                throw new RuntimeException("Unknown record type \""
+                        + record.type + "\"");
+            }
+            return record;
+        }
+        
+        private void readValue(ImportRecord record, String key) {
+            switch (key) {
+                case "type":
+                    record.type = readString();
+                    break;
+                case "name":
+                case "names":
+                case "spelling":
+                    record.name = readString();
+                    break;
+                case "location":
+                    if (tryReadNull()) break;
+                    record.location = readString();
+                    break;
+                case "shortcut":
+                    if (tryReadNull()) break;
+                    record.shortcut = readString();
+                    break;
+                case "adjectives":
+                case "synonyms":
+                    record.list = readStringArray();
+                    break;
+                case "prepositions":
+                    record.prepositions = readStringArray();
+                    break;
+                default:
+                    throw error("Unknown key \"" + key + "\"");
+            }
+        }
+        
+        private String[] readStringArray() {
+            ArrayList<String> items = new ArrayList<>();
+            expect('[');
+            if (peek() != ']') {
+                do {
+                    items.add(readString());
+                } while (tryRead(','));
+            }
+            expect(']');
+            return items.toArray(new String[items.size()]);
+        }
+        
+        private String readString() {
+            expect('"');
+            StringBuilder str = new StringBuilder();
+            while (true) {
+                if (position >= line.length()) {
+                    throw error("Unclosed string");
+                }
+                char c = line.charAt(position++);
+                if (c == '"') break;
+                if (c != '\\') {
+                    str.append(c);
+                    continue;
+                }
+                
+                if (position >= line.length()) {
+                    throw error("Unclosed string");
+                }
+                char escaped = line.charAt(position++);
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        str.append(escaped);
+                        break;
+                    case 'b':
+                        str.append('\b');
+                        break;
+                    case 'f':
+                        str.append('\f');
+                        break;
+                    case 'n':
+                        str.append('\n');
+                        break;
+                    case 'r':
+                        str.append('\r');
+                        break;
+                    case 't':
+                        str.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > line.length()) {
+                            throw error("Bad unicode escape");
+                        }
+                        try {
+                            str.append((char)Integer.parseInt(
+                                    line.substring(position, position + 4), 16
+                            ));
+                        } catch (NumberFormatException ex) {
+                            throw error("Bad unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        throw error("Bad escape \"\\" + escaped + "\"");
+                }
+            }
+            return str.toString();
+        }
+        
+        private boolean tryReadNull() {
+            skipWhitespace();
+            if (line.startsWith("null", position)) {
+                position += 4;
+                return true;
+            }
+            return false;
+        }
+        
+        private char peek() {
+            skipWhitespace();
+            return position < line.length() ? line.charAt(position) : 0;
+        }
+        
+        private boolean tryRead(char c) {
+            if (peek() != c) return false;
+            position++;
+            return true;
+        }
+        
+        private void expect(char c) {
+            if (!tryRead(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+        
+        private void skipWhitespace() {
+            while (position < line.length()
+                    && Character.isWhitespace(line.charAt(position))) {
+                position++;
+            }
+        }
+        
+        private RuntimeException error(String message) {
+            return new RuntimeException(message + " at column " + (position + 1));
+        }
+    }
+}
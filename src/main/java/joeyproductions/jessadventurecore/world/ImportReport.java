@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What happened during a world import: how much was added, how fast,
+ * which lines were skipped, and why, and which batches the world refused.
+ * @author Joseph Cramsey
+ */
+public class ImportReport {
+    
+    /**
+     * A line that could not be imported.
+     */
+    public static class LineError {
+        
+        public final long lineNumber;
+        public final String message;
+        
+        LineError(long lineNumber, String message) {
+            this.lineNumber = lineNumber;
+            this.message = message;
+        }
+        
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + message;
+        }
+    }
+    
+    /**
+     * A batch of lines that passed their own checks, but could not be added
+     * to the world together.
+     */
+    public static class BatchError {
+        
+        public final long firstLineNumber;
+        public final long lastLineNumber;
+        public final int recordCount;
+        public final String message;
+        
+        BatchError(long firstLineNumber, long lastLineNumber, int recordCount,
+                String message) {
+            this.firstLineNumber = firstLineNumber;
+            this.lastLineNumber = lastLineNumber;
+            this.recordCount = recordCount;
+            this.message = message;
+        }
+        
+        @Override
+        public String toString() {
+            return "Batch of " + recordCount + " from lines " + firstLineNumber
+                    + " to " + lastLineNumber + ": " + message;
+        }
+    }
+    
+    long recordCount = 0;
+    int roomCount = 0;
+    int nounCount = 0;
+    int verbCount = 0;
+    long elapsedNanos = 0;
+    private final ArrayList<LineError> errors = new ArrayList<>();
+    private final ArrayList<BatchError> batchErrors = new ArrayList<>();
+    
+    ImportReport() {
+        //
+    }
+    
+    void addError(long lineNumber, String message) {
+        errors.add(new LineError(lineNumber, message));
+    }
+    
+    void addBatchError(long firstLineNumber, long lastLineNumber,
+            int recordCount, String message) {
+        batchErrors.add(new BatchError(firstLineNumber, lastLineNumber,
+                recordCount, message));
+    }
+    
+    /**
+     * @return how many non-blank, non-comment lines were read
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+    
+    public int getRoomCount() {
+        return roomCount;
+    }
+    
+    public int getNounCount() {
+        return nounCount;
+    }
+    
+    public int getVerbCount() {
+        return verbCount;
+    }
+    
+    public List<LineError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+    
+    public List<BatchError> getBatchErrors() {
+        return Collections.unmodifiableList(batchErrors);
+    }
+    
+    public double getElapsedSeconds() {
+        return elapsedNanos / 1e9;
+    }
+    
+    public double getRecordsPerSecond() {
+        if (elapsedNanos == 0) return 0;
+        return recordCount / getElapsedSeconds();
+    }
+    
+    @Override
+    public String toString() {
+        return String.format(
+                "Imported %d rooms, %d nouns and %d verbs from %d records"
+                + " in %.3fs (%.0f records/s), with %d errors"
+                + " and %d batch errors",
+                roomCount, nounCount, verbCount, recordCount,
+                getElapsedSeconds(), getRecordsPerSecond(), errors.size(),
+                batchErrors.size()
+        );
+    }
+}
@@ -25,56 +25,124 @@ package joeyproductions.jessadventurecore.world;
 
 import joeyproductions.jessadventurecore.ui.NounProfile;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.TreeSet;
-import joeyproductions.jessadventurecore.ui.JessAdventureCore;
 
 /**
  * An association of a noun with adjectives.
+ * The names and adjectives themselves live in the world's NounStore; this is
+ * a lightweight view of one row in it.
  * @author Joseph Cramsey
  */
-public class Noun implements Referable { //TODO: Implement an express.js-style creation system
+public class Noun implements Referable, Location { //TODO: Implement an express.js-style creation system
     
-    public String primaryName;
-    public ArrayList<String> alternativeNames;
-    public ArrayList<String> adjectives;
-    private final long id;
+    private final NounStore store;
+    final int index;
+    
+    // Managed by the world, so the scope index stays up to date. Read
+    // without the world lock by findNouns(), so it has to be volatile.
+    volatile boolean isAdded;
+    Location location;
+    ArrayList<Noun> contents; // Most nouns hold nothing, so this starts null
     
     public Noun(String namesWithSpaces, World world, String... adjectives) {
-        this.alternativeNames = new ArrayList<>();
-        this.adjectives = new ArrayList<>();
-        if (namesWithSpaces.isBlank()) {
-            throw new RuntimeException("A noun name cannot be blank!");
+        this(NounDefinition.validated(
+                new NounDefinition(namesWithSpaces, adjectives)
+        ), world);
+    }
+    
+    private Noun(NounDefinition definition, World world) {
+        this(definition, world, world.getNextID());
+    }
+    
+    /**
+     * Makes a noun from a definition that has already been validated.
+     */
+    Noun(NounDefinition definition, World world, long id) {
+        SymbolTable symbols = world.nounStore.symbols;
+        
+        int primaryName = symbols.intern(definition.primaryName);
+        
+        int[] alternativeNames = new int[definition.alternativeNames.length];
+        for (int i = 0; i < alternativeNames.length; i++) {
+            alternativeNames[i] = symbols.intern(definition.alternativeNames[i]);
         }
-        String[] names = namesWithSpaces.split(" ");
-        primaryName = JessAdventureCore.validateString(names[0]);
-        for (int i = 1; i < names.length; i++) {
-            alternativeNames.add(JessAdventureCore.validateString(names[i]));
+        
+        int[] adjectiveSymbols = new int[definition.adjectives.length];
+        for (int i = 0; i < adjectiveSymbols.length; i++) {
+            adjectiveSymbols[i] = symbols.intern(definition.adjectives[i]);
         }
-        for (String adjective : adjectives) {
-            if (adjective.isBlank()) continue;
-            this.adjectives.add(JessAdventureCore.validateString(adjective));
+        
+        this.store = world.nounStore;
+        this.index = store.add(this, id, primaryName,
+                alternativeNames, alternativeNames.length,
+                adjectiveSymbols, adjectiveSymbols.length
+        );
+    }
+    
+    /**
+     * Makes a view for a row that is already in the store.
+     */
+    Noun(NounStore store, int index) {
+        this.store = store;
+        this.index = index;
+    }
+    
+    /**
+     * @return where this noun sits in the world's noun storage, which is
+     * also its bit in the descriptor index
+     */
+    public int getIndex() {
+        return index;
+    }
+    
+    public String getPrimaryName() {
+        return store.symbols.get(store.getPrimaryName(index));
+    }
+    
+    public List<String> getAlternativeNames() {
+        int count = store.getAlternativeCount(index);
+        ArrayList<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(store.symbols.get(store.getAlternative(index, i)));
+        }
+        return list;
+    }
+    
+    public List<String> getAdjectives() {
+        int count = store.getAdjectiveCount(index);
+        ArrayList<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(store.symbols.get(store.getAdjective(index, i)));
         }
-        this.id = world.getNextID();
+        return list;
     }
 
     @Override
     public ArrayList<VocabularyWord> gatherVocabulary() {
-        ArrayList<VocabularyWord> list = new ArrayList<>();
+        int alternativeCount = store.getAlternativeCount(index);
+        int adjectiveCount = store.getAdjectiveCount(index);
+        ArrayList<VocabularyWord> list =
+                new ArrayList<>(1 + alternativeCount + adjectiveCount);
         TreeSet<VocabularyWord> actualNouns = new TreeSet<>();
         
+        String primaryName = getPrimaryName();
         VocabularyWord _primaryName =
                 new VocabularyWord(primaryName, this, primaryName);
         list.add(_primaryName);
         actualNouns.add(_primaryName);
         
-        for (String alternative : alternativeNames) {
+        for (int i = 0; i < alternativeCount; i++) {
+            String alternative = store.symbols.get(store.getAlternative(index, i));
             VocabularyWord _alternative =
                     new VocabularyWord(alternative, this, alternative);
             list.add(_alternative);
             actualNouns.add(_alternative);
         }
         
-        for (String adjective : adjectives) {
+        for (int i = 0; i < adjectiveCount; i++) {
+            String adjective = store.symbols.get(store.getAdjective(index, i));
             list.add(new VocabularyWord(adjective, this, adjective));
         }
         
@@ -85,6 +153,22 @@ public class Noun implements Referable { //TODO: Implement an express.js-style c
 
     @Override
     public long getID() {
-        return id;
+        return store.getID(index);
+    }
+    
+    @Override
+    public List<Noun> getContents() {
+        if (contents == null) return Collections.emptyList();
+        return Collections.unmodifiableList(contents);
+    }
+    
+    @Override
+    public Location getLocation() {
+        return location;
+    }
+    
+    @Override
+    public String toString() {
+        return getPrimaryName();
     }
 }
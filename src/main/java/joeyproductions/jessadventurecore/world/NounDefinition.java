@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.Arrays;
+import joeyproductions.jessadventurecore.ui.JessAdventureCore;
+
+/**
+ * Everything needed to make a noun, without making it yet.
+ * 
+ * This is what World.addNouns() takes, so a big batch of definitions can be
+ * validated in parallel before any of them are added to the world.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class NounDefinition {
+    
+    private final String namesWithSpaces;
+    private final String[] rawAdjectives;
+    final Location location;
+    
+    // Filled in by validate()
+    String primaryName;
+    String[] alternativeNames;
+    String[] adjectives;
+    
+    // The primary name, alternative names, and adjectives, as symbols, in
+    // that order. Filled in by lookUpSymbols() and internMissingSymbols().
+    int[] symbols;
+    
+    /**
+     * Defines a noun that is not inside of anything.
+     */
+    public NounDefinition(String namesWithSpaces, String... adjectives) {
+        this(namesWithSpaces, null, adjectives);
+    }
+    
+    public NounDefinition(String namesWithSpaces, Location location,
+            String... adjectives) {
+        this.namesWithSpaces = namesWithSpaces;
+        this.rawAdjectives = adjectives;
+        this.location = location;
+    }
+    
+    /**
+     * Checks that every word can be typed by the player, and splits up the
+     * names. This does not touch the world, so it is safe to do from any
+     * thread.
+     */
+    void validate() {
+        if (namesWithSpaces.isBlank()) {
+            throw new RuntimeException("A noun name cannot be blank!");
+        }
+        // Checked now, so a bad location can't stop a batch halfway in
+        if (location != null && !(location instanceof Room)
+                && !(location instanceof Noun)) {
+            throw new RuntimeException("Unsupported location type: "
+                    + location.getClass().getName());
+        }
+        String[] names = namesWithSpaces.split(" ");
+        
+        primaryName = JessAdventureCore.validateString(names[0]);
+        
+        alternativeNames = new String[names.length - 1];
+        for (int i = 1; i < names.length; i++) {
+            alternativeNames[i - 1] = JessAdventureCore.validateString(names[i]);
+        }
+        
+        String[] validAdjectives = new String[rawAdjectives.length];
+        int adjectiveCount = 0;
+        for (String adjective : rawAdjectives) {
+            if (adjective.isBlank()) continue;
+            validAdjectives[adjectiveCount++] =
+                    JessAdventureCore.validateString(adjective);
+        }
+        adjectives = adjectiveCount == validAdjectives.length
+                ? validAdjectives
+                : Arrays.copyOf(validAdjectives, adjectiveCount);
+    }
+    
+    /**
+     * Finds the symbols for every word that the table already knows, and
+     * leaves NO_SYMBOL for the rest. This only reads the table, so it is
+     * safe to do from any thread.
+     */
+    void lookUpSymbols(SymbolTable table) {
+        symbols = new int[1 + alternativeNames.length + adjectives.length];
+        int next = 0;
+        symbols[next++] = table.lookup(primaryName);
+        for (String name : alternativeNames) {
+            symbols[next++] = table.lookup(name);
+        }
+        for (String adjective : adjectives) {
+            symbols[next++] = table.lookup(adjective);
+        }
+    }
+    
+    /**
+     * Interns the words that lookUpSymbols() didn't find. Done for one
+     * definition after another, in order, new words get the same symbols
+     * they would have gotten if the nouns were added one at a time.
+     */
+    void internMissingSymbols(SymbolTable table) {
+        for (int i = 0; i < symbols.length; i++) {
+            if (symbols[i] == SymbolTable.NO_SYMBOL) {
+                symbols[i] = table.intern(getWord(i));
+            }
+        }
+    }
+    
+    private String getWord(int wordIndex) {
+        if (wordIndex == 0) return primaryName;
+        wordIndex--;
+        if (wordIndex < alternativeNames.length) return alternativeNames[wordIndex];
+        return adjectives[wordIndex - alternativeNames.length];
+    }
+    
+    static NounDefinition validated(NounDefinition definition) {
+        definition.validate();
+        return definition;
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The storage for every noun in the world, kept as columns of primitives
+ * instead of one object per noun.
+ * 
+ * Noun objects are just views that point at a row in here. For worlds with a
+ * huge number of objects, this avoids paying for a pair of ArrayLists and a
+ * pile of Strings per noun, and keeps full scans moving through tightly-packed
+ * arrays.
+ * 
+ * Rows are only ever added, one writer at a time. The columns are replaced
+ * with bigger copies as they fill, and are volatile so that parsers on other
+ * threads always see a complete copy of the rows in their world version.
+ * 
+ * @author Joseph Cramsey
+ */
+class NounStore {
+    
+    private static final int INITIAL_CAPACITY = 64;
+    
+    final SymbolTable symbols;
+    final DescriptorIndex descriptors;
+    
+    private int count;
+    private volatile long[] ids;
+    private volatile int[] primaryNames;
+    private volatile Noun[] views;
+    
+    // Each noun's alternative names, followed by its adjectives, are packed
+    // end-to-end into the word pool. Noun i owns the symbols from
+    // wordStarts[i] up to wordStarts[i + 1], and its adjectives begin at
+    // adjectiveStarts[i].
+    private volatile int[] wordStarts;
+    private volatile int[] adjectiveStarts;
+    private volatile int[] wordPool;
+    
+    NounStore(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.descriptors = new DescriptorIndex(symbols);
+        this.count = 0;
+        this.ids = new long[INITIAL_CAPACITY];
+        this.primaryNames = new int[INITIAL_CAPACITY];
+        this.views = new Noun[INITIAL_CAPACITY];
+        this.wordStarts = new int[INITIAL_CAPACITY + 1];
+        this.adjectiveStarts = new int[INITIAL_CAPACITY];
+        this.wordPool = new int[INITIAL_CAPACITY * 4];
+    }
+    
+    /**
+     * Adopts columns and a descriptor index that were already filled in,
+     * like from a snapshot. The arrays are used as-is, not copied.
+     */
+    NounStore(SymbolTable symbols, DescriptorIndex descriptors,
+            int count, long[] ids, int[] primaryNames,
+            int[] wordStarts, int[] adjectiveStarts, int[] wordPool) {
+        this.symbols = symbols;
+        this.descriptors = descriptors;
+        this.count = count;
+        this.ids = ids;
+        this.primaryNames = primaryNames;
+        this.views = new Noun[count];
+        this.wordStarts = wordStarts;
+        this.adjectiveStarts = adjectiveStarts;
+        this.wordPool = wordPool;
+        
+        for (int i = 0; i < count; i++) {
+            views[i] = new Noun(this, i);
+        }
+    }
+    
+    /**
+     * Adds a row for a noun.
+     * @return the row index of the new noun
+     */
+    synchronized int add(Noun view, long id, int primaryName,
+            int[] alternatives, int alternativeCount,
+            int[] adjectives, int adjectiveCount) {
+        ensureCapacity(count + 1);
+        
+        int wordStart = wordStarts[count];
+        int wordEnd = wordStart + alternativeCount + adjectiveCount;
+        ensurePoolCapacity(wordEnd);
+        
+        System.arraycopy(alternatives, 0, wordPool, wordStart, alternativeCount);
+        System.arraycopy(adjectives, 0, wordPool,
+                wordStart + alternativeCount, adjectiveCount);
+        
+        ids[count] = id;
+        primaryNames[count] = primaryName;
+        views[count] = view;
+        adjectiveStarts[count] = wordStart + alternativeCount;
+        wordStarts[count + 1] = wordEnd;
+        
+        descriptors.add(count, primaryName);
+        for (int i = wordStart; i < wordEnd; i++) {
+            descriptors.add(count, wordPool[i]);
+        }
+        
+        return count++;
+    }
+    
+    /**
+     * Adds a row for every definition at once. The definitions must already
+     * have their symbols.
+     * 
+     * The rows are reserved and laid out first, so every row knows exactly
+     * where its words go, and then the rows are filled in on the fork/join
+     * pool, each into its own slot. Only the descriptor index is filled in
+     * one row at a time, because its posting lists are shared, and have to
+     * stay in row order.
+     * 
+     * @return the views of the new rows, in the same order
+     */
+    synchronized List<Noun> addAll(List<NounDefinition> definitions, long firstID) {
+        int first = count;
+        int batchSize = definitions.size();
+        ensureCapacity(first + batchSize);
+        
+        int[] starts = wordStarts;
+        for (int i = 0; i < batchSize; i++) {
+            int wordCount = definitions.get(i).symbols.length - 1;
+            starts[first + i + 1] = starts[first + i] + wordCount;
+        }
+        ensurePoolCapacity(starts[first + batchSize]);
+        
+        long[] idColumn = ids;
+        int[] nameColumn = primaryNames;
+        int[] adjectiveColumn = adjectiveStarts;
+        int[] pool = wordPool;
+        Noun[] viewColumn = views;
+        Noun[] made = new Noun[batchSize];
+        RangeTask.run(0, batchSize, (i) -> {
+            NounDefinition definition = definitions.get(i);
+            int row = first + i;
+            int[] symbols = definition.symbols;
+            idColumn[row] = firstID + i;
+            nameColumn[row] = symbols[0];
+            adjectiveColumn[row] = starts[row] + definition.alternativeNames.length;
+            System.arraycopy(symbols, 1, pool, starts[row], symbols.length - 1);
+            made[i] = new Noun(this, row);
+            viewColumn[row] = made[i];
+        });
+        
+        for (int row = first; row < first + batchSize; row++) {
+            descriptors.add(row, nameColumn[row]);
+            for (int i = starts[row]; i < starts[row + 1]; i++) {
+                descriptors.add(row, pool[i]);
+            }
+        }
+        
+        // Only now can anyone see the new rows
+        count = first + batchSize;
+        return Arrays.asList(made);
+    }
+    
+    synchronized int size() {
+        return count;
+    }
+    
+    long getID(int index) {
+        return ids[index];
+    }
+    
+    Noun getView(int index) {
+        return views[index];
+    }
+    
+    int getPrimaryName(int index) {
+        return primaryNames[index];
+    }
+    
+    int getAlternativeCount(int index) {
+        return adjectiveStarts[index] - wordStarts[index];
+    }
+    
+    int getAlternative(int index, int alternativeIndex) {
+        return wordPool[wordStarts[index] + alternativeIndex];
+    }
+    
+    int getAdjectiveCount(int index) {
+        return wordStarts[index + 1] - adjectiveStarts[index];
+    }
+    
+    int getAdjective(int index, int adjectiveIndex) {
+        return wordPool[adjectiveStarts[index] + adjectiveIndex];
+    }
+    
+    /**
+     * @return true if the symbol is any of the noun's names or adjectives
+     */
+    boolean hasWord(int index, int symbol) {
+        return hasWord(primaryNames, wordStarts, wordPool, index, symbol);
+    }
+    
+    private static boolean hasWord(int[] names, int[] starts, int[] pool,
+            int index, int symbol) {
+        if (names[index] == symbol) return true;
+        for (int i = starts[index]; i < starts[index + 1]; i++) {
+            if (pool[i] == symbol) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Scans every noun for ones using the given symbol as a name or adjective.
+     * @return the row indices of the matching nouns
+     */
+    int[] findWithWord(int symbol) {
+        // Take the row count and the columns together, under the same lock
+        // add() holds, so we never read a row that isn't finished, or a
+        // count that's ahead of the arrays we're reading.
+        int rowCount;
+        int[] names;
+        int[] starts;
+        int[] pool;
+        synchronized (this) {
+            rowCount = count;
+            names = primaryNames;
+            starts = wordStarts;
+            pool = wordPool;
+        }
+        
+        int[] found = new int[16];
+        int foundCount = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if (hasWord(names, starts, pool, i, symbol)) {
+                if (foundCount == found.length) {
+                    found = Arrays.copyOf(found, foundCount * 2);
+                }
+                found[foundCount++] = i;
+            }
+        }
+        return Arrays.copyOf(found, foundCount);
+    }
+    
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) return;
+        
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        primaryNames = Arrays.copyOf(primaryNames, newCapacity);
+        views = Arrays.copyOf(views, newCapacity);
+        adjectiveStarts = Arrays.copyOf(adjectiveStarts, newCapacity);
+        wordStarts = Arrays.copyOf(wordStarts, newCapacity + 1);
+    }
+    
+    private void ensurePoolCapacity(int capacity) {
+        if (capacity <= wordPool.length) return;
+        
+        wordPool = Arrays.copyOf(wordPool, Math.max(capacity, wordPool.length * 2));
+    }
+}
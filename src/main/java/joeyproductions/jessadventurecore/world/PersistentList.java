@@ -0,0 +1,246 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * An immutable list, where adding an item makes a new list that shares
+ * almost everything with the old one.
+ * 
+ * Items are kept in a tree of 32-wide arrays, with the newest items in a
+ * separate tail array. Appending only copies the tail, or the path from the
+ * root to where the tail gets tucked in, so it costs O(log32 n) no matter how
+ * big the list gets. Replacing an item, or taking the last one off, copies
+ * one path the same way. Anyone holding an older list keeps seeing exactly what
+ * was in it, which is what lets parsers read a world version while the game
+ * keeps changing the world.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class PersistentList<T> extends AbstractList<T> implements RandomAccess {
+    
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    
+    private static final PersistentList<?> EMPTY =
+            new PersistentList<>(0, BITS, new Object[WIDTH], new Object[0]);
+    
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+    
+    private PersistentList(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentList<T> empty() {
+        return (PersistentList<T>)EMPTY;
+    }
+    
+    public static <T> PersistentList<T> of(Collection<? extends T> items) {
+        PersistentList<T> list = empty();
+        for (T item : items) {
+            list = list.append(item);
+        }
+        return list;
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    private int getTailOffset() {
+        if (size < WIDTH) return 0;
+        return ((size - 1) >>> BITS) << BITS;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        
+        if (index >= getTailOffset()) {
+            return (T)tail[index & MASK];
+        }
+        
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[])node[(index >>> level) & MASK];
+        }
+        return (T)node[index & MASK];
+    }
+    
+    /**
+     * @return a new list with the item at the end, leaving this one alone
+     */
+    public PersistentList<T> append(T item) {
+        // Room in the tail, so that's all we need to copy
+        if (size - getTailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = item;
+            return new PersistentList<>(size + 1, shift, root, newTail);
+        }
+        
+        // The tail is full, so it gets tucked into the tree
+        Object[] newRoot;
+        int newShift = shift;
+        if ((size >>> BITS) > (1 << shift)) {
+            // The tree is full too, so it grows a level
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, tail);
+            newShift += BITS;
+        }
+        else {
+            newRoot = pushTail(shift, root, tail);
+        }
+        
+        return new PersistentList<>(size + 1, newShift, newRoot, new Object[] { item });
+    }
+    
+    /**
+     * @return a new list with the item at this index replaced, leaving this
+     * one alone
+     */
+    public PersistentList<T> replace(int index, T item) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        
+        if (index >= getTailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[index & MASK] = item;
+            return new PersistentList<>(size, shift, root, newTail);
+        }
+        return new PersistentList<>(size, shift, setInTree(shift, root, index, item), tail);
+    }
+    
+    private static Object[] setInTree(int level, Object[] node, int index, Object item) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = item;
+        }
+        else {
+            int subIndex = (index >>> level) & MASK;
+            copy[subIndex] = setInTree(level - BITS, (Object[])node[subIndex], index, item);
+        }
+        return copy;
+    }
+    
+    /**
+     * @return a new list without the last item, leaving this one alone
+     */
+    public PersistentList<T> removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("The list is already empty!");
+        }
+        if (size == 1) return empty();
+        
+        // More than one item in the tail, so that's all we need to copy
+        if (size - getTailOffset() > 1) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length - 1);
+            return new PersistentList<>(size - 1, shift, root, newTail);
+        }
+        
+        // The tail is about to be empty, so the last leaf in the tree comes
+        // back out to be the tail
+        Object[] newTail = getLeaf(size - 2);
+        Object[] newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = new Object[WIDTH];
+        }
+        if (shift > BITS && newRoot[1] == null) {
+            // Only one branch is left, so the tree loses a level
+            newRoot = (Object[])newRoot[0];
+            newShift -= BITS;
+        }
+        return new PersistentList<>(size - 1, newShift, newRoot, newTail);
+    }
+    
+    private Object[] getLeaf(int index) {
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[])node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+    
+    /**
+     * @return a copy of the node without the path to the last leaf, or null
+     * if nothing else was under it
+     */
+    private Object[] popTail(int level, Object[] node) {
+        int subIndex = ((size - 2) >>> level) & MASK;
+        if (level > BITS) {
+            Object[] newChild = popTail(level - BITS, (Object[])node[subIndex]);
+            if (newChild == null && subIndex == 0) return null;
+            Object[] copy = node.clone();
+            copy[subIndex] = newChild;
+            return copy;
+        }
+        if (subIndex == 0) return null;
+        Object[] copy = node.clone();
+        copy[subIndex] = null;
+        return copy;
+    }
+    
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int subIndex = ((size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+        
+        Object[] nodeToInsert;
+        if (level == BITS) {
+            nodeToInsert = tailNode;
+        }
+        else {
+            Object[] child = (Object[])parent[subIndex];
+            nodeToInsert = child != null
+                    ? pushTail(level - BITS, child, tailNode)
+                    : newPath(level - BITS, tailNode);
+        }
+        copy[subIndex] = nodeToInsert;
+        return copy;
+    }
+    
+    private static Object[] newPath(int level, Object[] node) {
+        if (level == 0) return node;
+        Object[] path = new Object[WIDTH];
+        path[0] = newPath(level - BITS, node);
+        return path;
+    }
+}
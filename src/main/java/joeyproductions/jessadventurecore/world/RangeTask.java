@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Splits a range of indices in half until the pieces are small, and runs a
+ * step for every index on the fork/join pool. The bulk adds use this for
+ * anything that only touches its own slot, like validating a definition, or
+ * filling in a reserved row.
+ * 
+ * @author Joseph Cramsey
+ */
+class RangeTask extends RecursiveAction {
+    
+    private static final int THRESHOLD = 1024;
+    
+    private final int start;
+    private final int end;
+    private final IntConsumer step;
+    
+    private RangeTask(int start, int end, IntConsumer step) {
+        this.start = start;
+        this.end = end;
+        this.step = step;
+    }
+    
+    /**
+     * Runs the step for every index from start up to end, and waits for all
+     * of them to finish.
+     */
+    static void run(int start, int end, IntConsumer step) {
+        ForkJoinPool.commonPool().invoke(new RangeTask(start, end, step));
+    }
+    
+    @Override
+    protected void compute() {
+        if (end - start <= THRESHOLD) {
+            for (int i = start; i < end; i++) {
+                step.accept(i);
+            }
+            return;
+        }
+        
+        int middle = (start + end) >>> 1;
+        invokeAll(
+                new RangeTask(start, middle, step),
+                new RangeTask(middle, end, step)
+        );
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.List;
+
+/**
+ * A submitted input, after the parser has worked out which verb and which
+ * nouns the player meant.
+ * 
+ * Each noun phrase the player typed becomes one list of the nouns it could
+ * be referring to. If a phrase could mean more than one noun, then every
+ * candidate is kept, and the verb's action can decide what to do about it.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class ResolvedCommand {
+    
+    public final String input;
+    public final Verb verb;
+    public final List<List<Noun>> directObjects;
+    // Null if the player didn't use a preposition
+    public final String preposition;
+    public final List<List<Noun>> indirectObjects;
+    // The world version the command was parsed against
+    public final long worldVersion;
+    
+    public ResolvedCommand(String input, Verb verb,
+            List<List<Noun>> directObjects,
+            String preposition, List<List<Noun>> indirectObjects,
+            long worldVersion) {
+        this.input = input;
+        this.verb = verb;
+        this.directObjects = List.copyOf(directObjects);
+        this.preposition = preposition;
+        this.indirectObjects = List.copyOf(indirectObjects);
+        this.worldVersion = worldVersion;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(verb.spelling).append(' ').append(directObjects);
+        if (preposition != null) {
+            str.append(' ').append(preposition).append(' ').append(indirectObjects);
+        }
+        return str.toString();
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Keeps track of which nouns the player can currently reach.
+ * Instead of searching the whole world whenever we need the reachable set,
+ * we update it as nouns move around, and as the player changes rooms, so the
+ * work done only grows with what is in scope.
+ * 
+ * Nouns that were never put anywhere are treated as being everywhere.
+ * 
+ * Each set is kept as a persistent list, which world versions share
+ * directly, along with where each noun sits in it. Adding a noun appends it,
+ * and removing one moves the last noun into its spot and drops the end, so
+ * every edit only copies O(log32 n) of the list, and nothing ever gets
+ * rebuilt from scratch. The order of the lists is not meaningful.
+ * 
+ * @author Joseph Cramsey
+ */
+class ScopeIndex {
+    
+    /**
+     * A set of nouns, kept as a persistent list, with an index of where each
+     * noun is in it.
+     */
+    private static class ScopeSet {
+        
+        private PersistentList<Noun> list;
+        private IdentityHashMap<Noun, Integer> positions;
+        
+        ScopeSet(int expectedSize) {
+            this.list = PersistentList.empty();
+            this.positions = new IdentityHashMap<>(expectedSize);
+        }
+        
+        boolean contains(Noun noun) {
+            return positions.containsKey(noun);
+        }
+        
+        boolean add(Noun noun) {
+            if (positions.containsKey(noun)) return false;
+            positions.put(noun, list.size());
+            list = list.append(noun);
+            return true;
+        }
+        
+        boolean remove(Noun noun) {
+            Integer position = positions.remove(noun);
+            if (position == null) return false;
+            
+            int lastIndex = list.size() - 1;
+            if (position != lastIndex) {
+                Noun last = list.get(lastIndex);
+                list = list.replace(position, last);
+                positions.put(last, position);
+            }
+            list = list.removeLast();
+            return true;
+        }
+        
+        PersistentList<Noun> getList() {
+            return list;
+        }
+    }
+    
+    private Room playerRoom;
+    private ScopeSet floating;
+    private ScopeSet reachable;
+    
+    ScopeIndex() {
+        this.playerRoom = null;
+        this.floating = new ScopeSet(16);
+        this.reachable = new ScopeSet(16);
+    }
+    
+    Room getPlayerRoom() {
+        return playerRoom;
+    }
+    
+    void setPlayerRoom(Room room) {
+        if (room == playerRoom) return;
+        
+        // Everything reachable came from the old room, or from inside a
+        // floating noun, so the set starts over, but the floating set stays
+        playerRoom = room;
+        reachable = new ScopeSet(16);
+        if (room != null) {
+            for (Noun noun : room.contents) {
+                addTree(noun);
+            }
+        }
+        
+        // Whatever is inside a floating noun was reachable too, and just got
+        // cleared out along with the old room.
+        for (Noun noun : floating.getList()) {
+            addContents(noun);
+        }
+    }
+    
+    /**
+     * Starts over from scratch, for when a lot of nouns were placed at once.
+     */
+    void rebuild(List<Noun> nouns, Room room) {
+        int floatingCount = 0;
+        for (Noun noun : nouns) {
+            if (noun.location == null) {
+                floatingCount++;
+            }
+        }
+        
+        // Sized up front, so big worlds don't rehash over and over
+        floating = new ScopeSet(floatingCount);
+        
+        for (Noun noun : nouns) {
+            if (noun.location == null) {
+                floating.add(noun);
+            }
+        }
+        
+        // This also gathers up the contents of the floating nouns
+        playerRoom = null;
+        setPlayerRoom(room);
+    }
+    
+    boolean contains(Noun noun) {
+        return floating.contains(noun) || reachable.contains(noun);
+    }
+    
+    /**
+     * Must be called after a noun has been moved from one location to another.
+     */
+    void nounMoved(Noun noun, Location from) {
+        boolean wasInScope = from == null
+                ? floating.contains(noun)
+                : isInScope(from);
+        boolean isInScope = noun.location == null || isInScope(noun.location);
+        
+        if (from == null) {
+            removeFloating(noun);
+        }
+        
+        if (wasInScope && !isInScope) {
+            removeTree(noun);
+        }
+        else if (!wasInScope && isInScope) {
+            if (noun.location == null) {
+                addFloating(noun);
+                addContents(noun);
+            }
+            else {
+                addTree(noun);
+            }
+        }
+        else if (isInScope) {
+            // Still reachable, but it may have switched between floating
+            // and being somewhere.
+            if (noun.location == null) {
+                removeReachable(noun);
+                addFloating(noun);
+            }
+            else {
+                addReachable(noun);
+            }
+        }
+    }
+    
+    private boolean isInScope(Location location) {
+        if (location == playerRoom) return true;
+        if (location instanceof Noun) return contains((Noun)location);
+        return false;
+    }
+    
+    private void addFloating(Noun noun) {
+        floating.add(noun);
+    }
+    
+    private void addReachable(Noun noun) {
+        reachable.add(noun);
+    }
+    
+    private void removeFloating(Noun noun) {
+        floating.remove(noun);
+    }
+    
+    private void removeReachable(Noun noun) {
+        reachable.remove(noun);
+    }
+    
+    private void addTree(Noun noun) {
+        addReachable(noun);
+        addContents(noun);
+    }
+    
+    private void addContents(Noun noun) {
+        if (noun.contents == null) return;
+        for (Noun inner : noun.contents) {
+            addTree(inner);
+        }
+    }
+    
+    private void removeTree(Noun noun) {
+        removeReachable(noun);
+        removeFloating(noun);
+        if (noun.contents == null) return;
+        for (Noun inner : noun.contents) {
+            removeTree(inner);
+        }
+    }
+    
+    PersistentList<Noun> getFloatingList() {
+        return floating.getList();
+    }
+    
+    PersistentList<Noun> getReachableList() {
+        return reachable.getList();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives every distinct string in the world a small integer ID, so the same
+ * word is only ever stored once, and can be compared as a number.
+ * 
+ * Symbols are only ever added, so parsers on other threads can read any
+ * symbol that was in their world version while new ones are being added.
+ * 
+ * @author Joseph Cramsey
+ */
+class SymbolTable {
+    
+    static final int NO_SYMBOL = -1;
+    
+    private final ConcurrentHashMap<String, Integer> ids;
+    // Replaced with a bigger copy when full, so readers see either one
+    private volatile String[] strings;
+    private int count;
+    
+    SymbolTable() {
+        this.ids = new ConcurrentHashMap<>();
+        this.strings = new String[64];
+        this.count = 0;
+    }
+    
+    /**
+     * Rebuilds a table from its strings, in symbol order.
+     */
+    SymbolTable(String[] strings) {
+        this.ids = new ConcurrentHashMap<>(Math.max(16, strings.length));
+        this.strings = new String[Math.max(64, strings.length)];
+        this.count = 0;
+        for (String str : strings) {
+            intern(str);
+        }
+    }
+    
+    synchronized int intern(String str) {
+        Integer id = ids.get(str);
+        if (id != null) return id;
+        
+        int newID = count++;
+        String[] table = strings;
+        if (newID == table.length) {
+            table = Arrays.copyOf(table, newID * 2);
+            strings = table;
+        }
+        table[newID] = str;
+        ids.put(str, newID);
+        return newID;
+    }
+    
+    int lookup(String str) {
+        Integer id = ids.get(str);
+        return id == null ? NO_SYMBOL : id;
+    }
+    
+    String get(int symbol) {
+        return strings[symbol];
+    }
+    
+    synchronized int size() {
+        return count;
+    }
+}
@@ -24,7 +24,9 @@
 package joeyproductions.jessadventurecore.world;
 
 import java.util.ArrayList;
-import joeyproductions.jessadventurecore.ui.JessAdventureCore;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 
 /**
  * Objects which the player uses to take action.
@@ -37,30 +39,66 @@ public class Verb implements Referable { //TODO: Implement an express.js-style c
     public final String shortcut;
     public final String[] objectPrepositions;
     private final long id;
+    private final VerbFrame frame;
+    // Made once, so every version of the world shares the same words
+    private final VocabularyWord[] vocabulary;
+    private final int phraseCount;
+    // Set by the game, and read by the game logic thread
+    private volatile VerbAction action;
     
     public Verb(String spelling, String[] synonyms, String shortcut,
             String[] objectPrepositions, World world) {
-        if (synonyms == null) {
-            throw new RuntimeException("similes cannot be null; perhaps declare a zero-length array?");
-        }
-        if (objectPrepositions == null) {
-            throw new RuntimeException("objectPrepositions cannot be null; perhaps declare a zero-length array?");
-        }
-        this.spelling = JessAdventureCore.validateString(spelling);
+        this(VerbDefinition.validated(new VerbDefinition(
+                spelling, synonyms, shortcut, objectPrepositions
+        )), world);
+    }
+    
+    private Verb(VerbDefinition definition, World world) {
+        this(definition.spelling, definition.synonyms, definition.shortcut,
+                definition.objectPrepositions, world.getNextID());
+    }
+    
+    /**
+     * Makes a verb whose strings were already validated, like from a
+     * snapshot, or a bulk build.
+     */
+    Verb(String spelling, String[] synonyms, String shortcut,
+            String[] objectPrepositions, long id) {
+        this.spelling = spelling;
         this.synonyms = synonyms;
         this.shortcut = shortcut;
         this.objectPrepositions = objectPrepositions;
-        for (int i = 0; i < this.synonyms.length; i++) {
-            this.synonyms[i] =
-                    JessAdventureCore.validateString(this.synonyms[i])
-                            .toLowerCase();
+        this.id = id;
+        
+        // Phrases first, then prepositions. A spelling only shows up once,
+        // even if it was given twice, and a blank shortcut means no shortcut,
+        // rather than a word that matches nothing and everything.
+        ArrayList<VocabularyWord> words = new ArrayList<>();
+        HashSet<String> seen = new HashSet<>();
+        addWord(words, seen, spelling, spelling);
+        for (String synonym : synonyms) {
+            addWord(words, seen, synonym, synonym);
         }
-        for (int i = 0; i < this.objectPrepositions.length; i++) {
-            this.objectPrepositions[i] =
-                    JessAdventureCore.validateString(this.objectPrepositions[i])
-                            .toLowerCase();
+        if (shortcut != null) {
+            addWord(words, seen, shortcut, shortcut + " -> " + spelling);
         }
-        this.id = world.getNextID();
+        this.phraseCount = words.size();
+        for (String preposition : objectPrepositions) {
+            addWord(words, seen, preposition, preposition);
+        }
+        this.vocabulary = words.toArray(new VocabularyWord[words.size()]);
+        
+        // The frame gets the same trimmed spellings as the vocabulary, so
+        // every word the parser can match is one the frame knows about.
+        this.frame = new VerbFrame(vocabulary, phraseCount);
+    }
+    
+    private void addWord(ArrayList<VocabularyWord> words, HashSet<String> seen,
+            String str, String suggestionStr) {
+        String normalized = str.trim();
+        if (normalized.isEmpty()) return;
+        if (!seen.add(normalized.toLowerCase())) return;
+        words.add(new VocabularyWord(normalized, this, suggestionStr));
     }
     
     public Verb(String spelling, World world) {
@@ -82,24 +120,45 @@ public class Verb implements Referable { //TODO: Implement an express.js-style c
     public boolean isTransitive() {
         return objectPrepositions.length > 0;
     }
+    
+    public VerbFrame getFrame() {
+        return frame;
+    }
+    
+    /**
+     * Sets what happens when the player uses this verb.
+     * Actions are not saved in snapshots, so set them after loading one.
+     */
+    public void setAction(VerbAction action) {
+        this.action = action;
+    }
+    
+    /**
+     * @return the verb's action, or null if the game hasn't given it one
+     */
+    public VerbAction getAction() {
+        return action;
+    }
+
+    /**
+     * @return the words that start this verb: its spelling, synonyms, and
+     * shortcut, if it has one
+     */
+    List<VocabularyWord> getPhraseWords() {
+        return Arrays.asList(vocabulary).subList(0, phraseCount);
+    }
+    
+    /**
+     * @return the prepositions this verb takes, as words
+     */
+    List<VocabularyWord> getPrepositionWords() {
+        return Arrays.asList(vocabulary).subList(phraseCount, vocabulary.length);
+    }
 
     @Override
     public ArrayList<VocabularyWord> gatherVocabulary() {
-        ArrayList<VocabularyWord> list = new ArrayList<>();
-        
-        list.add(new VocabularyWord(spelling, this, spelling));
-        
-        for (String synonym : synonyms) {
-            list.add(new VocabularyWord(synonym, this, synonym));
-        }
-        
-        list.add(new VocabularyWord(shortcut, this, shortcut + " -> " + spelling));
-        
-        for (String preposition : objectPrepositions) {
-            list.add(new VocabularyWord(preposition, this, preposition));
-        }
-        
-        return list;
+        // The words themselves are shared; only the list is new
+        return new ArrayList<>(Arrays.asList(vocabulary));
     }
 
     @Override
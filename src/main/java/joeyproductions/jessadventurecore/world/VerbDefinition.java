@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import joeyproductions.jessadventurecore.ui.JessAdventureCore;
+
+/**
+ * Everything needed to make a verb, without making it yet.
+ * 
+ * This is what World.addVerbs() takes, so a big batch of definitions can be
+ * validated in parallel before any of them are added to the world.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class VerbDefinition {
+    
+    String spelling;
+    String[] synonyms;
+    String shortcut;
+    String[] objectPrepositions;
+    
+    public VerbDefinition(String spelling, String[] synonyms, String shortcut,
+            String[] objectPrepositions) {
+        this.spelling = spelling;
+        this.synonyms = synonyms;
+        this.shortcut = shortcut;
+        this.objectPrepositions = objectPrepositions;
+    }
+    
+    /**
+     * Checks that every word can be typed by the player, lowercases the
+     * synonyms and prepositions, and trims the shortcut. This does not touch
+     * the world, so it is safe to do from any thread.
+     */
+    void validate() {
+        if (synonyms == null) {
+            throw new RuntimeException("similes cannot be null; perhaps declare a zero-length array?");
+        }
+        if (objectPrepositions == null) {
+            throw new RuntimeException("objectPrepositions cannot be null; perhaps declare a zero-length array?");
+        }
+        spelling = JessAdventureCore.validateString(spelling);
+        // A blank shortcut means no shortcut, but anything else becomes a
+        // word the player can type, so it has to pass the same check
+        shortcut = shortcut == null ? "" : shortcut.trim();
+        if (!shortcut.isEmpty()) {
+            shortcut = JessAdventureCore.validateString(shortcut);
+        }
+        synonyms = validateLowercase(synonyms);
+        objectPrepositions = validateLowercase(objectPrepositions);
+    }
+    
+    static VerbDefinition validated(VerbDefinition definition) {
+        definition.validate();
+        return definition;
+    }
+    
+    private static String[] validateLowercase(String[] strings) {
+        String[] valid = new String[strings.length];
+        for (int i = 0; i < strings.length; i++) {
+            valid[i] = JessAdventureCore.validateString(strings[i]).toLowerCase();
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.HashSet;
+
+/**
+ * A verb's grammar, compiled once when the verb is made.
+ * 
+ * Every verb follows the same little automaton:
+ *   [verb phrase] -> direct object nouns -> [preposition] -> indirect object nouns
+ * like "put the red bucket in the shed", or "look at the candy". What makes
+ * each verb's frame different is which phrases start it, and which
+ * prepositions it accepts, and both of those are hashed, so the parser can
+ * ask about any word in O(1), without scanning every non-noun word.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class VerbFrame {
+    
+    public static final int REJECT = -1;
+    public static final int AFTER_VERB = 0;
+    public static final int IN_DIRECT_OBJECT = 1;
+    public static final int AFTER_PREPOSITION = 2;
+    public static final int IN_INDIRECT_OBJECT = 3;
+    
+    // Lowercase, since the player's input is matched without case
+    private final HashSet<String> phrases;
+    private final HashSet<String> prepositions;
+    
+    /**
+     * @param vocabulary the verb's words, phrases first, then prepositions
+     * @param phraseCount how many of the words are phrases
+     */
+    VerbFrame(VocabularyWord[] vocabulary, int phraseCount) {
+        this.phrases = new HashSet<>();
+        for (int i = 0; i < phraseCount; i++) {
+            phrases.add(vocabulary[i].str.toLowerCase());
+        }
+        
+        this.prepositions = new HashSet<>();
+        for (int i = phraseCount; i < vocabulary.length; i++) {
+            prepositions.add(vocabulary[i].str.toLowerCase());
+        }
+    }
+    
+    /**
+     * @return true if the word starts this verb, instead of being one of
+     * its prepositions
+     */
+    public boolean isPhrase(String word) {
+        return phrases.contains(word.toLowerCase());
+    }
+    
+    public boolean acceptsPreposition(String word) {
+        return prepositions.contains(word.toLowerCase());
+    }
+    
+    /**
+     * Moves the automaton along by one word.
+     * @param state where the automaton is now
+     * @param preposition the preposition that was read, or null for a noun
+     * @return the next state, or REJECT if the word doesn't fit here
+     */
+    public int advance(int state, String preposition) {
+        if (preposition == null) {
+            switch (state) {
+                case AFTER_VERB:
+                case IN_DIRECT_OBJECT:
+                    return IN_DIRECT_OBJECT;
+                case AFTER_PREPOSITION:
+                case IN_INDIRECT_OBJECT:
+                    return IN_INDIRECT_OBJECT;
+                default:
+                    return REJECT;
+            }
+        }
+        
+        // A preposition has to come after the direct object, and only once
+        if (state == IN_DIRECT_OBJECT && acceptsPreposition(preposition)) {
+            return AFTER_PREPOSITION;
+        }
+        return REJECT;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import joeyproductions.jessadventurecore.ui.HashBuckets;
+import joeyproductions.jessadventurecore.ui.JessAdventureCore;
+
+/**
+ * Every verb's words, compiled once into lookup tables, instead of being
+ * gathered again for every keystroke.
+ * 
+ * Spellings are folded to lowercase for lookups, because that's how the
+ * player's input gets matched. When several verbs share a spelling, like two
+ * verbs that both answer to "use", that spelling only gets one suggestion.
+ * Matching the rest of the input against verb words is up to the parser's
+ * vocabulary index, which holds these words along with the nouns in scope.
+ * 
+ * The first word of a command is special, because only a verb phrase can go
+ * there, so the phrases are also kept apart, and can be told from the
+ * prepositions in one lookup. The first token of every phrase also goes in a
+ * table by the tokenizer's hash, so asking "could this input start a verb?"
+ * is one lookup too, and the table only gets built when the verbs change.
+ * 
+ * A lexicon is made for a list of verbs, and never changes. The world makes
+ * a new one whenever a verb is added, and every world version until the
+ * next verb shares it.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class VerbLexicon {
+    
+    // The verbs this was compiled from, so the world can tell if it's stale
+    final PersistentList<Verb> verbs;
+    
+    private final List<VocabularyWord> words;
+    private final List<VocabularyWord> phraseSuggestions;
+    private final Set<VocabularyWord> phrases;
+    private final HashBuckets<String> phraseFirstTokens;
+    
+    private VerbLexicon(PersistentList<Verb> verbs) {
+        this.verbs = verbs;
+        
+        ArrayList<VocabularyWord> allWords = new ArrayList<>();
+        this.phrases = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Keeps the first verb's word for each phrase spelling, in order
+        LinkedHashMap<String, VocabularyWord> suggestionsBySpelling =
+                new LinkedHashMap<>();
+        
+        for (Verb verb : verbs) {
+            for (VocabularyWord word : verb.getPhraseWords()) {
+                String folded = word.str.toLowerCase();
+                allWords.add(word);
+                phrases.add(word);
+                suggestionsBySpelling.putIfAbsent(folded, word);
+            }
+            allWords.addAll(verb.getPrepositionWords());
+        }
+        
+        this.words = Collections.unmodifiableList(allWords);
+        this.phraseSuggestions = Collections.unmodifiableList(
+                new ArrayList<>(suggestionsBySpelling.values())
+        );
+        
+        // One entry for each phrase spelling is plenty, since all we ever
+        // ask is whether any phrase starts this way
+        this.phraseFirstTokens = new HashBuckets<>();
+        for (VocabularyWord phrase : phraseSuggestions) {
+            int space = phrase.str.indexOf(' ');
+            String firstToken = space < 0 ? phrase.str : phrase.str.substring(0, space);
+            phraseFirstTokens.add(JessAdventureCore.foldedHash(firstToken), firstToken);
+        }
+    }
+    
+    static VerbLexicon compile(PersistentList<Verb> verbs) {
+        return new VerbLexicon(verbs);
+    }
+    
+    /**
+     * @return every verb word, phrases and prepositions alike
+     */
+    public List<VocabularyWord> getWords() {
+        return words;
+    }
+    
+    /**
+     * @return one word for every distinct phrase spelling, for suggesting
+     * how to start a command
+     */
+    public List<VocabularyWord> getPhraseSuggestions() {
+        return phraseSuggestions;
+    }
+    
+    /**
+     * @return true if this word starts its verb, rather than being one of
+     * its prepositions
+     */
+    public boolean isPhrase(VocabularyWord word) {
+        return phrases.contains(word);
+    }
+    
+    /**
+     * Two spellings can share a hash, so the caller still has to check that
+     * each token really is spelled like what it was looking for.
+     * @return the first token of every verb phrase whose first token has
+     * this hash, as given by JessAdventureCore.foldedHash()
+     */
+    public List<String> getPhraseFirstTokens(int hash) {
+        return phraseFirstTokens.get(hash);
+    }
+}
@@ -24,26 +24,63 @@
 package joeyproductions.jessadventurecore.world;
 
 import java.util.ArrayList;
-import java.util.ListIterator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The object that contains all objects which can be referred to by the player.
+ * 
+ * Changes to the world are made one at a time, and each one publishes a new
+ * WorldVersion. Anything reading the world from another thread, like the
+ * parser, should pin() a version instead of reading the live lists.
+ * 
  * @author Joseph Cramsey
  */
 public class World {
     
     // The final product will be a lot more complex; this is the cardboard
     // cutout version for testing.
-    public final ArrayList<Noun> nouns;
-    public final ArrayList<Verb> verbs;
+    // Nouns and verbs must be added with addNoun() and addVerb(), so they
+    // can be kept in scope, and so a new version is published
+    public final List<Noun> nouns;
+    public final List<Verb> verbs;
+    public final ArrayList<Room> rooms;
+    private final ArrayList<Noun> nounList;
+    private final ArrayList<Verb> verbList;
+    final NounStore nounStore;
+    private final ScopeIndex scope;
+    private PersistentList<Noun> nounVersions;
+    private PersistentList<Verb> verbVersions;
+    private VerbLexicon lexicon;
+    private final AtomicReference<WorldVersion> currentVersion;
     private Runnable startMethod;
     
-    private long lastReferableID = 0;
+    final IdAllocator idAllocator;
     
     private World() {
-        this.nouns = new ArrayList<>();
-        this.verbs = new ArrayList<>();
+        this(new NounStore(new SymbolTable()));
+    }
+    
+    World(NounStore nounStore) {
+        this.nounList = new ArrayList<>();
+        this.nounStore = nounStore;
+        this.idAllocator = new IdAllocator();
+        this.nouns = Collections.unmodifiableList(nounList);
+        this.verbList = new ArrayList<>();
+        this.verbs = Collections.unmodifiableList(verbList);
+        this.rooms = new ArrayList<>();
+        this.scope = new ScopeIndex();
+        this.nounVersions = PersistentList.empty();
+        this.verbVersions = PersistentList.empty();
+        this.lexicon = VerbLexicon.compile(verbVersions);
+        this.currentVersion = new AtomicReference<>(new WorldVersion(0,
+                lexicon, nounVersions,
+                PersistentList.empty(), PersistentList.empty(),
+                null, nounStore.descriptors
+        ));
     }
     
     public static World createWorld() {
@@ -70,29 +107,258 @@ public class World {
         this.startMethod = startMethod;
     }
     
-    //TODO: Once we get enough complexity, this will only gather vocab from
-    //      stuff the player can interact with
-    public void loadRelevantVocabulary(TreeSet<VocabularyWord> buffer) {
-        for (Verb verb : verbs) {
-            ArrayList<VocabularyWord> words = verb.gatherVocabulary();
-            ListIterator<VocabularyWord> iter = words.listIterator();
-            while (iter.hasNext()) {
-                buffer.add(iter.next());
+    /**
+     * Adds a noun that is not inside of anything.
+     * These nouns are always in scope, no matter where the player is.
+     */
+    /**
+     * Adds a room under the world's lock, and publishes a new version, so
+     * nobody sees the room list change in the middle of something else.
+     */
+    public synchronized void addRoom(Room room) {
+        rooms.add(room);
+        publish();
+    }
+    
+    public void addNoun(Noun noun) {
+        addNoun(noun, null);
+    }
+    
+    public synchronized void addNoun(Noun noun, Location location) {
+        addNounQuietly(noun, location);
+        publish();
+    }
+    
+    private void addNounQuietly(Noun noun, Location location) {
+        if (noun.isAdded) {
+            throw new RuntimeException("Noun \"" + noun + "\" was already added!");
+        }
+        noun.isAdded = true;
+        nounList.add(noun);
+        nounVersions = nounVersions.append(noun);
+        placeNoun(noun, location);
+    }
+    
+    public synchronized void addVerb(Verb verb) {
+        addVerbQuietly(verb);
+        publish();
+    }
+    
+    private void addVerbQuietly(Verb verb) {
+        verbList.add(verb);
+        verbVersions = verbVersions.append(verb);
+    }
+    
+    /**
+     * Makes and adds a whole batch of nouns at once.
+     * 
+     * The definitions are validated in parallel first, locations and all,
+     * so nothing is added if any of them are bad. Then, a block of IDs and a
+     * block of store rows are reserved up front, and the rows and their views
+     * are filled in parallel, each into its own slot, so the IDs come out the
+     * same no matter how the work was split up.
+     * 
+     * A few steps still happen one noun at a time, and in order: interning
+     * words that the symbol table has never seen, adding rows to the
+     * descriptor index, and putting the nouns into their locations. All of
+     * them write to something shared, and doing them in order keeps the
+     * symbols and contents lists the same as adding the nouns one by one.
+     * Only one new world version is published, at the end.
+     * 
+     * @return the new nouns, in the same order as their definitions
+     */
+    public List<Noun> addNouns(List<NounDefinition> definitions) {
+        RangeTask.run(0, definitions.size(),
+                (i) -> definitions.get(i).validate());
+        return commitNouns(definitions);
+    }
+    
+    /**
+     * Adds a batch of nouns whose definitions were already validated.
+     */
+    synchronized List<Noun> commitNouns(List<NounDefinition> definitions) {
+        long firstID = idAllocator.reserve(definitions.size());
+        
+        SymbolTable symbols = nounStore.symbols;
+        RangeTask.run(0, definitions.size(),
+                (i) -> definitions.get(i).lookUpSymbols(symbols));
+        for (NounDefinition definition : definitions) {
+            definition.internMissingSymbols(symbols);
+        }
+        
+        List<Noun> added = nounStore.addAll(definitions, firstID);
+        for (int i = 0; i < added.size(); i++) {
+            addNounQuietly(added.get(i), definitions.get(i).location);
+        }
+        publish();
+        return added;
+    }
+    
+    /**
+     * Makes and adds a whole batch of verbs at once, the same way as
+     * addNouns(). The verbs themselves are built in parallel, and then added
+     * to the verb list in order.
+     * @return the new verbs, in the same order as their definitions
+     */
+    public List<Verb> addVerbs(List<VerbDefinition> definitions) {
+        RangeTask.run(0, definitions.size(),
+                (i) -> definitions.get(i).validate());
+        return commitVerbs(definitions);
+    }
+    
+    /**
+     * Adds a batch of verbs whose definitions were already validated.
+     */
+    synchronized List<Verb> commitVerbs(List<VerbDefinition> definitions) {
+        long firstID = idAllocator.reserve(definitions.size());
+        Verb[] made = new Verb[definitions.size()];
+        RangeTask.run(0, made.length, (i) -> {
+            VerbDefinition definition = definitions.get(i);
+            made[i] = new Verb(definition.spelling, definition.synonyms,
+                    definition.shortcut, definition.objectPrepositions,
+                    firstID + i
+            );
+        });
+        for (Verb verb : made) {
+            addVerbQuietly(verb);
+        }
+        publish();
+        return Arrays.asList(made);
+    }
+    
+    /**
+     * @return the latest version of the world, which will never change
+     * under the caller
+     */
+    public WorldVersion pin() {
+        return currentVersion.get();
+    }
+    
+    private void publish() {
+        WorldVersion previous = currentVersion.get();
+        // Most changes don't touch the verbs, so only recompile when they do
+        if (lexicon.verbs != verbVersions) {
+            lexicon = VerbLexicon.compile(verbVersions);
+        }
+        currentVersion.set(new WorldVersion(previous.number + 1,
+                lexicon, nounVersions,
+                scope.getFloatingList(), scope.getReachableList(),
+                scope.getPlayerRoom(), nounStore.descriptors
+        ));
+    }
+    
+    /**
+     * Puts a noun inside of a location, which can be a room, another noun, or
+     * null to make the noun be everywhere.
+     */
+    public synchronized void moveNoun(Noun noun, Location destination) {
+        placeNoun(noun, destination);
+        publish();
+    }
+    
+    private void placeNoun(Noun noun, Location destination) {
+        for (Location outer = destination; outer != null; outer = outer.getLocation()) {
+            if (outer == noun) {
+                throw new RuntimeException("Noun \"" + noun
+                        + "\" cannot be put inside of itself!");
             }
         }
         
-        for (Noun noun : nouns) {
-            ArrayList<VocabularyWord> words = noun.gatherVocabulary();
-            ListIterator<VocabularyWord> iter = words.listIterator();
-            while (iter.hasNext()) {
-                buffer.add(iter.next());
+        Location from = noun.location;
+        if (from instanceof Room) {
+            ((Room)from).contents.remove(noun);
+        }
+        else if (from instanceof Noun) {
+            ((Noun)from).contents.remove(noun);
+        }
+        
+        if (destination instanceof Room) {
+            ((Room)destination).contents.add(noun);
+        }
+        else if (destination instanceof Noun) {
+            Noun container = (Noun)destination;
+            if (container.contents == null) {
+                container.contents = new ArrayList<>();
             }
+            container.contents.add(noun);
         }
+        else if (destination != null) {
+            throw new RuntimeException("Unsupported location type: "
+                    + destination.getClass().getName());
+        }
+        
+        noun.location = destination;
+        scope.nounMoved(noun, from);
+    }
+    
+    /**
+     * Marks nouns as added, when their locations and contents have already
+     * been filled in, like from a snapshot. The scope is rebuilt once, at the
+     * end.
+     */
+    synchronized void restoreNouns(List<Noun> added, Room playerRoom) {
+        for (Noun noun : added) {
+            noun.isAdded = true;
+            nounList.add(noun);
+            nounVersions = nounVersions.append(noun);
+        }
+        scope.rebuild(nounList, playerRoom);
+        publish();
+    }
+    
+    public synchronized void setPlayerRoom(Room room) {
+        scope.setPlayerRoom(room);
+        publish();
+    }
+    
+    public Room getPlayerRoom() {
+        return pin().playerRoom;
+    }
+    
+    public synchronized boolean isInScope(Noun noun) {
+        return scope.contains(noun);
+    }
+    
+    public List<Noun> getNounsInScope() {
+        return pin().getNounsInScope();
+    }
+    
+    public DescriptorIndex getDescriptorIndex() {
+        return nounStore.descriptors;
+    }
+    
+    /**
+     * Finds every noun, anywhere in the world, that has the given word as a
+     * name or adjective.
+     */
+    public ArrayList<Noun> findNouns(String word) {
+        ArrayList<Noun> found = new ArrayList<>();
+        int symbol = nounStore.symbols.lookup(word);
+        if (symbol == SymbolTable.NO_SYMBOL) return found;
+        
+        for (int index : nounStore.findWithWord(symbol)) {
+            Noun noun = nounStore.getView(index);
+            // A noun gets its row when it's made, but it isn't in the world
+            // until it's added
+            if (noun.isAdded) {
+                found.add(noun);
+            }
+        }
+        return found;
+    }
+    
+    /**
+     * Gathers vocab from the verbs, and from only the nouns the player can
+     * currently interact with.
+     */
+    public void loadRelevantVocabulary(TreeSet<VocabularyWord> buffer) {
+        pin().loadRelevantVocabulary(buffer);
     }
     
+    /**
+     * Safe to call from any thread.
+     */
     public long getNextID() {
-        long id = lastReferableID;
-        lastReferableID++;
-        return id;
+        return idAllocator.next();
     }
 }
@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Function;
+
+/**
+ * Streams rooms, nouns and verbs out of CSV or JSON-lines files, and adds
+ * them to a world.
+ * 
+ * Files are read one line at a time, so they can be much bigger than memory.
+ * Each line is checked with the same rules as the Noun and Verb
+ * constructors, and a bad line is reported and skipped, instead of stopping
+ * the whole import. Good lines are added to the world in batches, so it only
+ * publishes a new version every few thousand objects.
+ * 
+ * Blank lines, and lines starting with #, are ignored. See ImportRecord for
+ * the line formats. Nouns can only be put in rooms, which have to be defined
+ * before they are used, either in the file or in the world already.
+ * 
+ * @author Joseph Cramsey
+ */
+public class WorldImporter {
+    
+    private static final int BATCH_SIZE = 4096;
+    
+    private final World world;
+    private final HashMap<String, Room> rooms;
+    private final ArrayList<NounDefinition> nounBatch;
+    private final ArrayList<VerbDefinition> verbBatch;
+    private final ImportReport report;
+    // The line being handled, and the first line in each pending batch
+    private long lineNumber;
+    private long nounBatchFirstLine;
+    private long verbBatchFirstLine;
+    
+    private WorldImporter(World world) {
+        this.world = world;
+        this.rooms = new HashMap<>();
+        for (Room room : world.rooms) {
+            rooms.put(room.name, room);
+        }
+        this.nounBatch = new ArrayList<>(BATCH_SIZE);
+        this.verbBatch = new ArrayList<>(BATCH_SIZE);
+        this.report = new ImportReport();
+    }
+    
+    /**
+     * Picks the format from the file extension: .csv for CSV, or .jsonl or
+     * .json for JSON lines.
+     */
+    public static ImportReport importFile(World world, Path path) throws IOException {
+        String fileName = path.getFileName().toString().toLowerCase();
+        boolean isCsv = fileName.endsWith(".csv");
+        if (!isCsv && !fileName.endsWith(".jsonl") && !fileName.endsWith(".json")) {
+            throw new IOException("Cannot tell the format of " + path
+                    + "; expected .csv, .jsonl, or .json");
+        }
+        
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return isCsv ? importCsv(world, reader) : importJsonLines(world, reader);
+        }
+    }
+    
+    public static ImportReport importCsv(World world, BufferedReader reader) throws IOException {
+        return new WorldImporter(world).run(reader, ImportRecord::parseCsv);
+    }
+    
+    public static ImportReport importJsonLines(World world, BufferedReader reader) throws IOException {
+        return new WorldImporter(world).run(reader, ImportRecord::parseJson);
+    }
+    
+    private ImportReport run(BufferedReader reader,
+            Function<String, ImportRecord> parser) throws IOException {
+        long startTime = System.nanoTime();
+        lineNumber = 0;
+        
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) continue;
+            report.recordCount++;
+            
+            try {
+                handle(parser.apply(line));
+            } catch (RuntimeException ex) {
+                report.addError(lineNumber, ex.getMessage());
+            }
+        }
+        
+        flushNouns();
+        flushVerbs();
+        report.elapsedNanos = System.nanoTime() - startTime;
+        return report;
+    }
+    
+    private void handle(ImportRecord record) {
+        switch (record.type) {
+            case "room":
+                addRoom(record);
+                break;
+            case "noun":
+                addNoun(record);
+                break;
+            case "verb":
+                addVerb(record);
+                break;
+        }
+    }
+    
+    private void addRoom(ImportRecord record) {
+        if (record.name.isBlank()) {
+            throw new RuntimeException("A room name cannot be blank!");
+        }
+        if (rooms.containsKey(record.name)) {
+            throw new RuntimeException("Room \"" + record.name + "\" already exists!");
+        }
+        
+        Room room = new Room(record.name);
+        world.addRoom(room);
+        rooms.put(room.name, room);
+        report.roomCount++;
+    }
+    
+    private void addNoun(ImportRecord record) {
+        Room room = null;
+        if (!record.location.isBlank()) {
+            room = rooms.get(record.location);
+            if (room == null) {
+                throw new RuntimeException("Room \"" + record.location
+                        + "\" has not been defined!");
+            }
+        }
+        
+        NounDefinition definition =
+                new NounDefinition(record.name, room, record.list);
+        definition.validate();
+        if (nounBatch.isEmpty()) {
+            nounBatchFirstLine = lineNumber;
+        }
+        nounBatch.add(definition);
+        
+        if (nounBatch.size() >= BATCH_SIZE) {
+            flushNouns();
+        }
+    }
+    
+    private void addVerb(ImportRecord record) {
+        VerbDefinition definition = new VerbDefinition(record.name,
+                record.list, record.shortcut, record.prepositions);
+        definition.validate();
+        if (verbBatch.isEmpty()) {
+            verbBatchFirstLine = lineNumber;
+        }
+        verbBatch.add(definition);
+        
+        if (verbBatch.size() >= BATCH_SIZE) {
+            flushVerbs();
+        }
+    }
+    
+    /**
+     * If the world won't take the batch, that's the batch's fault, not the
+     * fault of whichever line happened to fill it up. Either way, the batch
+     * is dropped, so the next flush doesn't try the same bad batch again.
+     */
+    private void flushNouns() {
+        if (nounBatch.isEmpty()) return;
+        try {
+            report.nounCount += world.commitNouns(nounBatch).size();
+        } catch (RuntimeException ex) {
+            report.addBatchError(nounBatchFirstLine, lineNumber,
+                    nounBatch.size(), ex.getMessage());
+        } finally {
+            nounBatch.clear();
+        }
+    }
+    
+    private void flushVerbs() {
+        if (verbBatch.isEmpty()) return;
+        try {
+            report.verbCount += world.commitVerbs(verbBatch).size();
+        } catch (RuntimeException ex) {
+            report.addBatchError(verbBatchFirstLine, lineNumber,
+                    verbBatch.size(), ex.getMessage());
+        } finally {
+            verbBatch.clear();
+        }
+    }
+}
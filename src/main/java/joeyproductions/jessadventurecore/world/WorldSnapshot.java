@@ -0,0 +1,560 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary image of a world, which can be written once, and then
+ * loaded back much faster than building the world up in code.
+ * 
+ * Everything is stored as columns, the same way the NounStore keeps it, so
+ * loading is mostly bulk copies out of a memory-mapped file. Strings were
+ * already validated when the world was first built, so they are not
+ * validated again. A CRC32 of everything after the header catches damaged
+ * files before we trust any of it.
+ * 
+ * The layout, all little-endian, is:
+ *   header:  magic, version, next ID, payload length, payload CRC32
+ *   symbols: every noun name and adjective, as a string table
+ *   strings: room names and verb words, as a string table
+ *   rooms:   name strings, then the nouns each room holds
+ *   nouns:   IDs, primary names, the word pool, the nouns each noun holds,
+ *            and which nouns were added to the world
+ *   player:  the room index the player is in, or -1
+ *   verbs:   IDs, spellings, shortcuts, synonyms, and object prepositions
+ *   index:   the descriptor dictionary as a string table, each symbol's
+ *            dictionary entry, then every word's posting list
+ * A string table is a count, count + 1 byte offsets, then the UTF-8 bytes.
+ * A list of lists is count + 1 start offsets, then the pooled items.
+ * 
+ * Because the descriptor index is saved fully built, loading a snapshot
+ * skips all of the work of indexing every noun's words again.
+ * 
+ * Start methods are code, so they are not part of a snapshot, and have to
+ * be added again after loading.
+ * 
+ * @author Joseph Cramsey
+ */
+public class WorldSnapshot {
+    
+    private static final int MAGIC = 0x5357414A; // "JAWS"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+    private static final int NO_ROOM = -1;
+    
+    private WorldSnapshot() {
+        //
+    }
+    
+    public static void write(World world, Path path) throws IOException {
+        SnapshotWriter out = new SnapshotWriter();
+        NounStore store = world.nounStore;
+        int nounCount = store.size();
+        
+        IdentityHashMap<Room, Integer> roomIndices = new IdentityHashMap<>();
+        for (int i = 0; i < world.rooms.size(); i++) {
+            roomIndices.put(world.rooms.get(i), i);
+        }
+        
+        // Room names and verb words share one table
+        LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+        
+        String[] symbols = new String[store.symbols.size()];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = store.symbols.get(i);
+        }
+        out.putStrings(Arrays.asList(symbols));
+        
+        int[] roomNames = new int[world.rooms.size()];
+        for (int i = 0; i < roomNames.length; i++) {
+            roomNames[i] = internString(strings, world.rooms.get(i).name);
+        }
+        
+        int verbCount = world.verbs.size();
+        long[] verbIDs = new long[verbCount];
+        int[] spellings = new int[verbCount];
+        int[] shortcuts = new int[verbCount];
+        IntPool synonyms = new IntPool(verbCount);
+        IntPool prepositions = new IntPool(verbCount);
+        for (int i = 0; i < verbCount; i++) {
+            Verb verb = world.verbs.get(i);
+            verbIDs[i] = verb.getID();
+            spellings[i] = internString(strings, verb.spelling);
+            shortcuts[i] = internString(strings, verb.shortcut);
+            for (String synonym : verb.synonyms) {
+                synonyms.add(internString(strings, synonym));
+            }
+            synonyms.endList();
+            for (String preposition : verb.objectPrepositions) {
+                prepositions.add(internString(strings, preposition));
+            }
+            prepositions.endList();
+        }
+        
+        out.putStrings(new ArrayList<>(strings.keySet()));
+        
+        // Rooms
+        out.putInt(roomNames.length);
+        out.putInts(roomNames, roomNames.length);
+        IntPool roomContents = new IntPool(roomNames.length);
+        for (Room room : world.rooms) {
+            for (Noun noun : room.contents) {
+                roomContents.add(noun.index);
+            }
+            roomContents.endList();
+        }
+        roomContents.writeTo(out);
+        
+        // Nouns
+        out.putInt(nounCount);
+        for (int i = 0; i < nounCount; i++) {
+            out.putLong(store.getID(i));
+        }
+        for (int i = 0; i < nounCount; i++) {
+            out.putInt(store.getPrimaryName(i));
+        }
+        
+        int[] wordStarts = new int[nounCount + 1];
+        int[] adjectiveStarts = new int[nounCount];
+        for (int i = 0; i < nounCount; i++) {
+            adjectiveStarts[i] = wordStarts[i] + store.getAlternativeCount(i);
+            wordStarts[i + 1] = adjectiveStarts[i] + store.getAdjectiveCount(i);
+        }
+        out.putInts(wordStarts, wordStarts.length);
+        out.putInts(adjectiveStarts, adjectiveStarts.length);
+        for (int i = 0; i < nounCount; i++) {
+            for (int j = 0; j < store.getAlternativeCount(i); j++) {
+                out.putInt(store.getAlternative(i, j));
+            }
+            for (int j = 0; j < store.getAdjectiveCount(i); j++) {
+                out.putInt(store.getAdjective(i, j));
+            }
+        }
+        
+        IntPool nounContents = new IntPool(nounCount);
+        for (int i = 0; i < nounCount; i++) {
+            Noun noun = store.getView(i);
+            if (noun.contents != null) {
+                for (Noun inner : noun.contents) {
+                    nounContents.add(inner.index);
+                }
+            }
+            nounContents.endList();
+        }
+        nounContents.writeTo(out);
+        
+        out.putInt(world.nouns.size());
+        for (Noun noun : world.nouns) {
+            if (noun.location instanceof Room
+                    && !roomIndices.containsKey((Room)noun.location)) {
+                throw new RuntimeException("Noun \"" + noun + "\" is in room \""
+                        + noun.location + "\", which is not in world.rooms!");
+            }
+            out.putInt(noun.index);
+        }
+        
+        // Player
+        Room playerRoom = world.getPlayerRoom();
+        if (playerRoom == null) {
+            out.putInt(NO_ROOM);
+        }
+        else {
+            Integer playerRoomIndex = roomIndices.get(playerRoom);
+            if (playerRoomIndex == null) {
+                throw new RuntimeException("The player is in room \""
+                        + playerRoom + "\", which is not in world.rooms!");
+            }
+            out.putInt(playerRoomIndex);
+        }
+        
+        // Verbs
+        out.putInt(verbCount);
+        for (long id : verbIDs) {
+            out.putLong(id);
+        }
+        out.putInts(spellings, verbCount);
+        out.putInts(shortcuts, verbCount);
+        synonyms.writeTo(out);
+        prepositions.writeTo(out);
+        
+        // Descriptor index
+        DescriptorIndex descriptors = store.descriptors;
+        int wordCount = descriptors.size();
+        String[] words = new String[wordCount];
+        for (int w = 0; w < wordCount; w++) {
+            words[w] = descriptors.getWord(w);
+        }
+        out.putStrings(Arrays.asList(words));
+        for (int i = 0; i < symbols.length; i++) {
+            out.putInt(descriptors.getWordForExistingSymbol(i));
+        }
+        IntPool postings = new IntPool(wordCount);
+        int[] buffer = new int[16];
+        for (int w = 0; w < wordCount; w++) {
+            buffer = descriptors.copyPostings(w, buffer);
+            for (int i = 0; i < descriptors.getPostingSize(w); i++) {
+                postings.add(buffer[i]);
+            }
+            postings.endList();
+        }
+        postings.writeTo(out);
+        
+        out.finish(world.idAllocator.peek());
+        
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer contents = out.buffer.flip();
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+        }
+    }
+    
+    public static World read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to be a world snapshot.");
+            }
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(map, path.toString());
+        }
+    }
+    
+    /**
+     * Loads a snapshot from a resource. Snapshots sitting in a folder are
+     * mapped like any other file, but ones inside of a jar have to be
+     * read into memory first.
+     */
+    public static World read(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return read(Path.of(url.toURI()));
+            } catch (URISyntaxException ex) {
+                throw new IOException("Bad snapshot location: " + url, ex);
+            }
+        }
+        
+        byte[] contents;
+        try (InputStream in = url.openStream()) {
+            contents = in.readAllBytes();
+        }
+        return read(ByteBuffer.wrap(contents), url.toString());
+    }
+    
+    private static World read(ByteBuffer source, String sourceName) throws IOException {
+        source.order(ByteOrder.LITTLE_ENDIAN);
+        
+        if (source.limit() < HEADER_SIZE || source.getInt(0) != MAGIC) {
+            throw new IOException(sourceName + " is not a world snapshot!");
+        }
+        if (source.getInt(4) != VERSION) {
+            throw new IOException(sourceName + " is snapshot version "
+                    + source.getInt(4) + ", but only version "
+                    + VERSION + " is supported.");
+        }
+        
+        long nextID = source.getLong(8);
+        int payloadLength = source.getInt(16);
+        if (payloadLength != source.limit() - HEADER_SIZE) {
+            throw new IOException(sourceName + " is cut short or padded!");
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(source.slice(HEADER_SIZE, payloadLength));
+        if ((int)crc.getValue() != source.getInt(20)) {
+            throw new IOException(sourceName + " failed its checksum!");
+        }
+        
+        source.position(HEADER_SIZE);
+        
+        SymbolTable symbols = new SymbolTable(getStrings(source));
+        String[] strings = getStrings(source);
+        
+        // Rooms
+        int roomCount = source.getInt();
+        int[] roomNames = getInts(source, roomCount);
+        int[] roomContentStarts = getInts(source, roomCount + 1);
+        int[] roomContents = getInts(source, roomContentStarts[roomCount]);
+        
+        // Nouns
+        int nounCount = source.getInt();
+        long[] ids = getLongs(source, nounCount);
+        int[] primaryNames = getInts(source, nounCount);
+        int[] wordStarts = getInts(source, nounCount + 1);
+        int[] adjectiveStarts = getInts(source, nounCount);
+        int[] wordPool = getInts(source, wordStarts[nounCount]);
+        int[] nounContentStarts = getInts(source, nounCount + 1);
+        int[] nounContents = getInts(source, nounContentStarts[nounCount]);
+        int[] added = getInts(source, source.getInt());
+        
+        int playerRoomIndex = source.getInt();
+        
+        // Verbs
+        int verbCount = source.getInt();
+        long[] verbIDs = getLongs(source, verbCount);
+        int[] spellings = getInts(source, verbCount);
+        int[] shortcuts = getInts(source, verbCount);
+        int[] synonymStarts = getInts(source, verbCount + 1);
+        int[] synonyms = getInts(source, synonymStarts[verbCount]);
+        int[] prepositionStarts = getInts(source, verbCount + 1);
+        int[] prepositions = getInts(source, prepositionStarts[verbCount]);
+        
+        // Descriptor index
+        String[] words = getStrings(source);
+        int[] symbolToWord = getInts(source, symbols.size());
+        int[] postingStarts = getInts(source, words.length + 1);
+        int[] postings = getInts(source, postingStarts[words.length]);
+        
+        // Now we can put it all together
+        DescriptorIndex descriptors = new DescriptorIndex(symbols, words,
+                symbolToWord, postingStarts, postings);
+        NounStore store = new NounStore(symbols, descriptors,
+                nounCount, ids, primaryNames,
+                wordStarts, adjectiveStarts, wordPool);
+        World world = new World(store);
+        world.idAllocator.advanceTo(nextID);
+        
+        for (int i = 0; i < roomCount; i++) {
+            Room room = new Room(strings[roomNames[i]]);
+            for (int j = roomContentStarts[i]; j < roomContentStarts[i + 1]; j++) {
+                Noun inner = store.getView(roomContents[j]);
+                room.contents.add(inner);
+                inner.location = room;
+            }
+            world.rooms.add(room);
+        }
+        
+        for (int i = 0; i < nounCount; i++) {
+            int start = nounContentStarts[i];
+            int end = nounContentStarts[i + 1];
+            if (start == end) continue;
+            
+            Noun noun = store.getView(i);
+            noun.contents = new ArrayList<>(end - start);
+            for (int j = start; j < end; j++) {
+                Noun inner = store.getView(nounContents[j]);
+                noun.contents.add(inner);
+                inner.location = noun;
+            }
+        }
+        
+        for (int i = 0; i < verbCount; i++) {
+            world.addVerb(new Verb(
+                    strings[spellings[i]],
+                    getPooledStrings(strings, synonyms,
+                            synonymStarts[i], synonymStarts[i + 1]),
+                    strings[shortcuts[i]],
+                    getPooledStrings(strings, prepositions,
+                            prepositionStarts[i], prepositionStarts[i + 1]),
+                    verbIDs[i]
+            ));
+        }
+        
+        ArrayList<Noun> addedNouns = new ArrayList<>(added.length);
+        for (int index : added) {
+            addedNouns.add(store.getView(index));
+        }
+        world.restoreNouns(addedNouns,
+                playerRoomIndex == NO_ROOM ? null : world.rooms.get(playerRoomIndex));
+        
+        return world;
+    }
+    
+    private static int internString(LinkedHashMap<String, Integer> strings, String str) {
+        Integer index = strings.get(str);
+        if (index != null) return index;
+        int newIndex = strings.size();
+        strings.put(str, newIndex);
+        return newIndex;
+    }
+    
+    private static String[] getPooledStrings(String[] strings, int[] pool,
+            int start, int end) {
+        String[] list = new String[end - start];
+        for (int i = start; i < end; i++) {
+            list[i - start] = strings[pool[i]];
+        }
+        return list;
+    }
+    
+    private static int[] getInts(ByteBuffer source, int count) {
+        int[] arr = new int[count];
+        source.asIntBuffer().get(arr);
+        source.position(source.position() + count * Integer.BYTES);
+        return arr;
+    }
+    
+    private static long[] getLongs(ByteBuffer source, int count) {
+        long[] arr = new long[count];
+        source.asLongBuffer().get(arr);
+        source.position(source.position() + count * Long.BYTES);
+        return arr;
+    }
+    
+    private static String[] getStrings(ByteBuffer source) {
+        int count = source.getInt();
+        int[] offsets = getInts(source, count + 1);
+        byte[] blob = new byte[offsets[count]];
+        source.get(blob);
+        
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = new String(blob, offsets[i], offsets[i + 1] - offsets[i],
+                    StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+    
+    /**
+     * Grows a little-endian buffer as things are put into it, and fills in
+     * the header once everything is there.
+     */
+    private static class SnapshotWriter {
+        
+        private ByteBuffer buffer;
+        
+        SnapshotWriter() {
+            buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(HEADER_SIZE);
+        }
+        
+        private void ensureRoom(int byteCount) {
+            if (buffer.remaining() >= byteCount) return;
+            
+            long newSize = (long)buffer.capacity() * 2;
+            while (newSize < (long)buffer.position() + byteCount) {
+                newSize *= 2;
+            }
+            if (newSize > Integer.MAX_VALUE) {
+                throw new RuntimeException("World snapshot cannot grow past 2GB.");
+            }
+            
+            ByteBuffer bigger = ByteBuffer.allocate((int)newSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+        
+        void putInt(int value) {
+            ensureRoom(Integer.BYTES);
+            buffer.putInt(value);
+        }
+        
+        void putLong(long value) {
+            ensureRoom(Long.BYTES);
+            buffer.putLong(value);
+        }
+        
+        void putInts(int[] values, int count) {
+            ensureRoom(count * Integer.BYTES);
+            buffer.asIntBuffer().put(values, 0, count);
+            buffer.position(buffer.position() + count * Integer.BYTES);
+        }
+        
+        void putStrings(List<String> strings) {
+            byte[][] encoded = new byte[strings.size()][];
+            int[] offsets = new int[strings.size() + 1];
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                offsets[i + 1] = offsets[i] + encoded[i].length;
+            }
+            
+            putInt(encoded.length);
+            putInts(offsets, offsets.length);
+            ensureRoom(offsets[encoded.length]);
+            for (byte[] bytes : encoded) {
+                buffer.put(bytes);
+            }
+        }
+        
+        void finish(long nextID) {
+            int payloadLength = buffer.position() - HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_SIZE, payloadLength));
+            
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, nextID);
+            buffer.putInt(16, payloadLength);
+            buffer.putInt(20, (int)crc.getValue());
+        }
+    }
+    
+    /**
+     * A list of int lists, packed end-to-end with start offsets.
+     */
+    private static class IntPool {
+        
+        private int[] starts;
+        private int listCount;
+        private int[] pool;
+        private int size;
+        
+        IntPool(int expectedLists) {
+            this.starts = new int[expectedLists + 1];
+            this.listCount = 0;
+            this.pool = new int[16];
+            this.size = 0;
+        }
+        
+        void add(int value) {
+            if (size == pool.length) {
+                pool = Arrays.copyOf(pool, size * 2);
+            }
+            pool[size++] = value;
+        }
+        
+        void endList() {
+            listCount++;
+            if (listCount == starts.length) {
+                starts = Arrays.copyOf(starts, listCount * 2);
+            }
+            starts[listCount] = size;
+        }
+        
+        void writeTo(SnapshotWriter out) {
+            out.putInts(starts, listCount + 1);
+            out.putInts(pool, size);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2022 Joseph Cramsey.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package joeyproductions.jessadventurecore.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * One moment in a world's history, which never changes after it is made.
+ * 
+ * Every time the world is changed, it publishes a new version, which shares
+ * everything that did not change with the version before it. Parsers pin
+ * whatever version is current when they start, and can read it for as long
+ * as they like, without locking, and without the game logic pulling the
+ * rug out from under them.
+ * 
+ * @author Joseph Cramsey
+ */
+public final class WorldVersion {
+    
+    public final long number;
+    public final PersistentList<Verb> verbs;
+    public final PersistentList<Noun> nouns;
+    // Nouns that are everywhere, and nouns reachable from the player's room
+    public final PersistentList<Noun> floatingScope;
+    public final PersistentList<Noun> reachableScope;
+    public final Room playerRoom;
+    private final DescriptorIndex descriptors;
+    private final VerbLexicon lexicon;
+    
+    WorldVersion(long number, VerbLexicon lexicon, PersistentList<Noun> nouns,
+            PersistentList<Noun> floatingScope, PersistentList<Noun> reachableScope,
+            Room playerRoom, DescriptorIndex descriptors) {
+        this.number = number;
+        this.lexicon = lexicon;
+        this.verbs = lexicon.verbs;
+        this.nouns = nouns;
+        this.floatingScope = floatingScope;
+        this.reachableScope = reachableScope;
+        this.playerRoom = playerRoom;
+        this.descriptors = descriptors;
+    }
+    
+    /**
+     * The descriptor index only ever has nouns added to it, so everything in
+     * this version can be found in it.
+     */
+    public DescriptorIndex getDescriptorIndex() {
+        return descriptors;
+    }
+    
+    /**
+     * The lexicon is shared with every other version that has the same verbs.
+     */
+    public VerbLexicon getVerbLexicon() {
+        return lexicon;
+    }
+    
+    public List<Noun> getNounsInScope() {
+        ArrayList<Noun> list =
+                new ArrayList<>(floatingScope.size() + reachableScope.size());
+        list.addAll(floatingScope);
+        list.addAll(reachableScope);
+        return list;
+    }
+    
+    /**
+     * Gathers vocab from the verbs, and from only the nouns the player can
+     * interact with in this version.
+     */
+    public void loadRelevantVocabulary(TreeSet<VocabularyWord> buffer) {
+        buffer.addAll(lexicon.getWords());
+        
+        for (Noun noun : floatingScope) {
+            buffer.addAll(noun.gatherVocabulary());
+        }
+        
+        for (Noun noun : reachableScope) {
+            buffer.addAll(noun.gatherVocabulary());
+        }
+    }
+}
@@ -23,10 +23,20 @@
  */
 package joeyproductions.testgame;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import joeyproductions.jessadventurecore.ui.JessAdventureCore;
+import joeyproductions.jessadventurecore.ui.WalkthroughReplay;
 import joeyproductions.jessadventurecore.world.Noun;
+import joeyproductions.jessadventurecore.world.ResolvedCommand;
+import joeyproductions.jessadventurecore.world.Room;
 import joeyproductions.jessadventurecore.world.Verb;
 import joeyproductions.jessadventurecore.world.World;
+import joeyproductions.jessadventurecore.world.WorldSnapshot;
 
 /**
  * This is just a test game to experiment with the adventure system.
@@ -36,31 +46,104 @@ public class TestGame {
     
     public static JessAdventureCore ADV;
     
-    public static void main(String[] args) {
+    // Written by the build, so the world doesn't have to be built at startup
+    private static final String SNAPSHOT_RESOURCE = "world.snap";
+    
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("--write-snapshot")) {
+            Path snapshotPath = Path.of(args[1]);
+            Files.createDirectories(snapshotPath.toAbsolutePath().getParent());
+            WorldSnapshot.write(buildWorld(), snapshotPath);
+            System.out.println("Wrote world snapshot to " + snapshotPath);
+            return;
+        }
+        
+        if (args.length == 2 && args[0].equals("--replay")) {
+            // Profile a recorded walkthrough, without a window or any story
+            World world = buildWorld();
+            addActions(world);
+            System.out.println(WalkthroughReplay.replay(
+                    "Test Game", "Joseph Cramsey", world,
+                    WalkthroughReplay.readLog(Path.of(args[1])),
+                    OutputStream.nullOutputStream()
+            ));
+            return;
+        }
+        
+        URL snapshot = TestGame.class.getResource(SNAPSHOT_RESOURCE);
+        World world = snapshot != null
+                ? WorldSnapshot.read(snapshot)
+                : buildWorld();
+        
+        // Actions are code, so they aren't in the snapshot
+        addActions(world);
+        
+        JessAdventureCore.initAdventure("Test Game", "Joseph Cramsey", world);
+        ADV = JessAdventureCore.CORE;
+    }
+    
+    public static void addActions(World world) {
+        for (Verb verb : world.verbs) {
+            if (verb.spelling.equals("examine")) {
+                verb.setAction(TestGame::examine);
+            }
+        }
+    }
+    
+    private static void examine(ResolvedCommand command) {
+        if (command.directObjects.isEmpty()) {
+            JessAdventureCore.CORE.appendParagraph("What do you want to examine?");
+            return;
+        }
+        
+        for (List<Noun> phrase : command.directObjects) {
+            if (phrase.size() > 1) {
+                JessAdventureCore.CORE.appendParagraph("Which one do you mean?");
+                continue;
+            }
+            
+            Noun noun = phrase.get(0);
+            JessAdventureCore.CORE.appendParagraph("It's a "
+                    + String.join(" ", noun.getAdjectives())
+                    + " " + noun.getPrimaryName() + ".");
+        }
+    }
+    
+    public static World buildWorld() {
         World testWorld = World.createWorld();
         
-        testWorld.verbs.add(new Verb(
+        testWorld.addVerb(new Verb(
                 "examine", new String[] {
                     "look at",
                     "inspect"
                 }, "x", testWorld
         ));
-        testWorld.verbs.add(new Verb("take", testWorld));
+        testWorld.addVerb(new Verb("take", testWorld));
         
-        testWorld.nouns.add(new Noun(
+        Room beach = new Room("Beach");
+        Room shed = new Room("Shed");
+        testWorld.rooms.add(beach);
+        testWorld.rooms.add(shed);
+        
+        Noun sandyBucket = new Noun(
                 "bucket", testWorld, "pale", "red", "sandy", "plastic"
-        ));
-        testWorld.nouns.add(new Noun(
+        );
+        testWorld.addNoun(sandyBucket, beach);
+        testWorld.addNoun(new Noun(
                 "bucket", testWorld, "blue", "clean", "plastic"
-        ));
-        testWorld.nouns.add(new Noun(
+        ), beach);
+        testWorld.addNoun(new Noun(
                 "candy", testWorld, "red"
-        ));
-        testWorld.nouns.add(new Noun(
+        ), sandyBucket);
+        testWorld.addNoun(new Noun(
                 "bucket", testWorld, "small", "pale", "red", "plastic"
-        ));
+        ), beach);
+        testWorld.addNoun(new Noun(
+                "shovel", testWorld, "rusty"
+        ), shed);
         
-        JessAdventureCore.initAdventure("Test Game", "Joseph Cramsey", testWorld);
-        ADV = JessAdventureCore.CORE;
+        testWorld.setPlayerRoom(beach);
+        
+        return testWorld;
     }
 }